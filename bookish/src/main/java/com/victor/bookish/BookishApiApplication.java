@@ -9,16 +9,22 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaAuditing(auditorAwareRef = "auditorAware")
 @EnableAsync
+@EnableScheduling
 @EnableJpaRepositories(basePackages =
 		{"com.victor.bookish.user",
 				"com.victor.bookish.role",
 				"com.victor.bookish.book",
 				"com.victor.bookish.feedback",
-				"com.victor.bookish.history"
+				"com.victor.bookish.history",
+				"com.victor.bookish.ledger",
+				"com.victor.bookish.reservation",
+				"com.victor.bookish.stats",
+				"com.victor.bookish.email"
 		})
 
 public class BookishApiApplication {
@@ -1,9 +1,10 @@
 package com.victor.bookish.auth;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.mail.MessagingException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,26 +20,38 @@ public class AuthenticationController {
     @PostMapping("/register")
     @ResponseStatus(HttpStatus.ACCEPTED)
     public ResponseEntity<?> register(
-        @RequestBody @Valid RegistrationRequest request
-    ) throws MessagingException {
+        @RequestBody @Valid RegistrationRequest request,
+        HttpServletRequest httpRequest
+    ) {
 
-        authenticationService.register(request);
+        authenticationService.register(request, httpRequest.getRemoteAddr());
         return ResponseEntity.accepted().build();
     }
 
 
     @PostMapping("/authenticate")
     public ResponseEntity<AuthenticationResponse> authenticate(
-            @RequestBody @Valid AuthenticationRequest authenticationRequest
+            @RequestBody @Valid AuthenticationRequest authenticationRequest,
+            HttpServletRequest httpRequest
+    ) {
+
+        return ResponseEntity.ok(authenticationService.authenticate(authenticationRequest, httpRequest.getRemoteAddr()));
+    }
+
+    // revokes the bearer token of the request
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authHeader
     ) {
 
-        return ResponseEntity.ok(authenticationService.authenticate(authenticationRequest));
+        authenticationService.logout(authHeader);
     }
 
     @GetMapping("/activate-account")
     public void confirm(
             @RequestParam String token
-    ) throws MessagingException {
+    ) {
 
         authenticationService.activateAccount(token);
     }
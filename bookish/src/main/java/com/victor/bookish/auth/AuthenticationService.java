@@ -4,11 +4,14 @@ import com.victor.bookish.email.EmailService;
 import com.victor.bookish.email.EmailTemplateName;
 import com.victor.bookish.role.RoleRepository;
 import com.victor.bookish.security.JwtService;
+import com.victor.bookish.security.JwtVerifier;
+import com.victor.bookish.security.LoginRateLimiter;
+import com.victor.bookish.security.TokenRevocationService;
 import com.victor.bookish.user.Token;
 import com.victor.bookish.user.TokenRepository;
 import com.victor.bookish.user.User;
 import com.victor.bookish.user.UserRepository;
-import jakarta.mail.MessagingException;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -17,7 +20,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
@@ -35,11 +38,17 @@ public class AuthenticationService {
     private final EmailService emailService;
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
+    private final LoginRateLimiter loginRateLimiter;
+    private final JwtVerifier jwtVerifier;
+    private final TokenRevocationService tokenRevocationService;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${application.mailing.frontend.activation-url}")
     private String activationUrl;
 
-    public void register(RegistrationRequest request) throws MessagingException {
+    public void register(RegistrationRequest request, String clientIp) {
+
+        loginRateLimiter.acquireForIp(clientIp);
 
         var userRole = roleRepository.findByName("USER")
                 // TODO: better exception handling
@@ -55,12 +64,15 @@ public class AuthenticationService {
                 .roles(List.of(userRole))
                 .build();
 
-        userRepository.save(user);
-
-        sendValidationEmail(user);
+        // the user, its activation token and the email committed together, once the password is
+        // hashed (not while holding a connection)
+        transactionTemplate.executeWithoutResult(status -> {
+            userRepository.save(user);
+            sendValidationEmail(user);
+        });
     }
 
-    private void sendValidationEmail(User user) throws MessagingException {
+    private void sendValidationEmail(User user) {
         var newToken = generateAndSaveAuthenticationToken(user);
         emailService.sendEmail(
                 user.getEmail(),
@@ -100,7 +112,10 @@ public class AuthenticationService {
         return tokenBuilder.toString();
     }
 
-    public AuthenticationResponse authenticate(AuthenticationRequest authenticationRequest) {
+    public AuthenticationResponse authenticate(AuthenticationRequest authenticationRequest, String clientIp) {
+
+        // before the password is hashed
+        loginRateLimiter.acquire(authenticationRequest.getEmail(), clientIp);
 
         var auth = authenticationManager
                 .authenticate(new UsernamePasswordAuthenticationToken(
@@ -112,7 +127,9 @@ public class AuthenticationService {
 
         var user = (User) auth.getPrincipal();
 
-        claims.put("fullName", user.fullName());
+        claims.put(JwtService.FULL_NAME_CLAIM, user.fullName());
+        // lets JwtFilter build the principal without loading the user
+        claims.put(JwtService.USER_ID_CLAIM, user.getId());
 
         var jwtToken = jwtService.generateToken(claims, user);
 
@@ -122,8 +139,20 @@ public class AuthenticationService {
                 .build();
     }
 
+    // /auth is not filtered by JwtFilter, the token is verified here
+    public void logout(String authHeader) {
+        if(authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return;
+        }
+        try {
+            tokenRevocationService.revoke(jwtVerifier.verify(authHeader.substring(7)));
+        } catch (JwtException e) {
+            // invalid or expired already, nothing to revoke
+        }
+    }
+
 //    @Transactional
-    public void activateAccount(String token) throws MessagingException {
+    public void activateAccount(String token) {
         Token savedtoken = tokenRepository.findByToken(token)
                 // todo: exception should be defined
                 .orElseThrow(() -> new RuntimeException("Invalid token"));
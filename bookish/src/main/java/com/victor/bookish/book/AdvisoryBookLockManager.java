@@ -0,0 +1,102 @@
+package com.victor.bookish.book;
+
+import com.victor.bookish.exception.BookLockTimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Transaction-level Postgres advisory lock on (namespace, book id): shared by every instance using
+// the same database, and released by Postgres at commit/rollback (or when the connection dies).
+// pg_try_advisory_xact_lock never blocks, it is retried with a growing pause until the timeout
+@Component
+@ConditionalOnProperty(name = "application.books.lock.mode", havingValue = "advisory")
+public class AdvisoryBookLockManager implements BookLockManager {
+
+    // first key of the two-key form, so the book locks cannot clash with other advisory locks
+    private static final int BOOK_LOCK_NAMESPACE = 0x424F4F4B; // "BOOK"
+    private static final long MAX_PAUSE_MILLIS = 50;
+
+    private final Duration timeout;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer waitTimer;
+    private final Counter contended;
+    private final Counter timeouts;
+
+    public AdvisoryBookLockManager(
+            @Value("${application.books.lock.timeout:5s}") Duration timeout,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry
+    ) {
+        this.timeout = timeout;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.waitTimer = Timer.builder("book.lock.wait")
+                .description("Time spent waiting for a book lock")
+                .tag("mode", "advisory")
+                .register(meterRegistry);
+        this.contended = Counter.builder("book.lock.contended")
+                .description("Book lock acquisitions that had to wait")
+                .tag("mode", "advisory")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("book.lock.timeouts")
+                .description("Book lock acquisitions that timed out")
+                .tag("mode", "advisory")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T withLocks(Collection<Integer> bookIds, Supplier<T> action) {
+        // the locks belong to the transaction: taken in it, released when it ends
+        return transactionTemplate.execute(status -> {
+            bookIds.stream().distinct().sorted().forEach(this::lock);
+            return action.get();
+        });
+    }
+
+    private void lock(Integer bookId) {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        long pauseMillis = 1;
+
+        try {
+            if(tryLock(bookId)) {
+                return;
+            }
+            contended.increment();
+            while(!tryLock(bookId)) {
+                if(System.nanoTime() >= deadline) {
+                    timeouts.increment();
+                    throw new BookLockTimeoutException("The book with ID:: " + bookId + " is busy, please retry");
+                }
+                Thread.sleep(pauseMillis);
+                pauseMillis = Math.min(pauseMillis * 2, MAX_PAUSE_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BookLockTimeoutException("Interrupted while waiting for the book with ID:: " + bookId);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean tryLock(Integer bookId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?, ?)",
+                Boolean.class,
+                BOOK_LOCK_NAMESPACE,
+                bookId
+        ));
+    }
+}
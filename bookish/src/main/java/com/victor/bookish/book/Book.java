@@ -10,6 +10,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.data.annotation.CreatedBy;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedBy;
@@ -24,6 +25,15 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(indexes = {
+        // keyset pagination of the listings, see BookRepository
+        @Index(name = "idx_book_created_date_id", columnList = "createdDate, id"),
+        @Index(name = "idx_book_owner_created_date_id", columnList = "owner_id, createdDate, id"),
+        // filters of BookSpecification (the expression and pattern indexes are in DatabaseIndexInitializer)
+        @Index(name = "idx_book_rating_average", columnList = "ratingAverage"),
+        // BookSpecification.isAvailable, mostly for the borrowed ones (available = the bulk of the table)
+        @Index(name = "idx_book_borrower_id", columnList = "borrowerId")
+})
 public class Book extends BaseEntity {
 
     private String title;
@@ -34,6 +44,27 @@ public class Book extends BaseEntity {
     private boolean archived;
     private boolean shareable;
 
+    // running aggregate of the feedback notes, kept up to date by FeedbackService
+    // so the rate can be read without loading the feedbacks
+    @ColumnDefault("0")
+    private double ratingSum;
+
+    @ColumnDefault("0")
+    private int ratingCount;
+
+    // ratingSum / ratingCount stored as well, so the minimum rating filter can use an index
+    @ColumnDefault("0")
+    private double ratingAverage;
+
+    // the user holding the book, from the borrow until the owner approves the return
+    // (null = available). Only set through the conditional UPDATEs of BookRepository
+    private Integer borrowerId;
+
+    // bumped on every change (bulk updates of BookRepository included), the ETag of the book endpoints
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
     @ManyToOne
     @JoinColumn(name = "owner_id")
     private User owner;
@@ -46,14 +77,15 @@ public class Book extends BaseEntity {
 
     @Transient
     public double getRate() {
-        if(feedbacks == null || feedbacks.isEmpty()) {
+        return computeRate(ratingSum, ratingCount);
+    }
+
+    public static double computeRate(double ratingSum, int ratingCount) {
+        if(ratingCount == 0) {
             return 0.0;
         }
 
-        var rate = feedbacks.stream()
-                .mapToDouble(Feedback::getNote)
-                .average()
-                .orElse(0.0);
+        var rate = ratingSum / ratingCount;
 
         return Math.round(rate * 10.0) / 10.0; // divided by 10.0 to cast to double
     }
@@ -0,0 +1,26 @@
+package com.victor.bookish.book;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Books lent before Book.borrowerId existed still have an open loan in the history only.
+// Idempotent: only the books without a borrower are looked at
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class BookBorrowerBackfill implements CommandLineRunner {
+
+    private final BookRepository bookRepository;
+
+    @Override
+    @Transactional
+    public void run(String... args) {
+        int backfilled = bookRepository.backfillBorrowers();
+        if(backfilled > 0) {
+            log.info("Borrower set on {} book(s) from their open loans", backfilled);
+        }
+    }
+}
@@ -1,15 +1,32 @@
 package com.victor.bookish.book;
 
+import com.victor.bookish.common.CursorPageResponse;
 import com.victor.bookish.common.PageResponse;
+import com.victor.bookish.common.TotalMode;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springdoc.core.annotations.ParameterObject;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @RestController
 @RequestMapping("books")
 @RequiredArgsConstructor // for automatic dependency injection
@@ -17,6 +34,8 @@ import org.springframework.web.multipart.MultipartFile;
 public class BookController {
 
     private final BookService bookService;
+    private final BookExportService bookExportService;
+    private final BookImportService bookImportService;
 
     @PostMapping
     public ResponseEntity<Integer> saveBook(
@@ -26,10 +45,31 @@ public class BookController {
         return ResponseEntity.ok(bookService.save(bookRequest, connectedUser));
     }
 
+    // creates books from a CSV (header: title,authorName,isbn,synopsis,sharable) or NDJSON upload,
+    // invalid rows are reported in the response and do not abort the import
+    @PostMapping(value = "/bulk", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<BookImportResponse> importBooks(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body,
+            Authentication connectedUser
+    ) throws IOException {
+        return ResponseEntity.ok(bookImportService.importBooks(body, contentType, connectedUser));
+    }
+
     @GetMapping("{book-id}")
     public ResponseEntity<BookResponse> findBookById(
-            @PathVariable("book-id") Integer bookId
+            @PathVariable("book-id") Integer bookId,
+            WebRequest webRequest
     ) {
+        // answers 304 (If-None-Match / If-Modified-Since) after a version lookup only,
+        // otherwise the ETag and Last-Modified headers are added to the full response
+        BookVersion version = bookService.findBookVersion(bookId);
+        if(webRequest.checkNotModified(
+                "\"" + version.id() + "-" + version.version() + "\"",
+                version.lastModifiedDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+        )) {
+            return null;
+        }
         return ResponseEntity.ok(bookService.findById(bookId));
     }
 
@@ -37,27 +77,161 @@ public class BookController {
     public ResponseEntity<PageResponse<BookResponse>> findAllBooks(
             @RequestParam(name = "page", defaultValue = "0", required = false) int page,
             @RequestParam(name = "size", defaultValue = "10", required = false) int size,
-            Authentication connectedUser
+            // withTotal=false skips the COUNT query, approximateTotal=true uses a cached COUNT
+            @RequestParam(name = "withTotal", defaultValue = "true", required = false) boolean withTotal,
+            @RequestParam(name = "approximateTotal", defaultValue = "false", required = false) boolean approximateTotal,
+            @ParameterObject BookFilter filter,
+            Authentication connectedUser,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(bookService.findAllBooks(page, size, connectedUser));
+        TotalMode totalMode = TotalMode.of(withTotal, approximateTotal);
+        // a client revalidating gets its 304 after the version query only
+        boolean revalidating = webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+        if(filter.isEmpty() && revalidating && webRequest.checkNotModified(
+                bookService.findAllBooksETag(page, size, totalMode, connectedUser))) {
+            return null;
+        }
+        return withETag(bookService.findAllBooksWithETag(
+                page,
+                size,
+                totalMode,
+                filter,
+                connectedUser
+        ), revalidating);
     }
 
     @GetMapping("/owner")
     public ResponseEntity<PageResponse<BookResponse>> findAllBooksByOwner(
             @RequestParam(name = "page", defaultValue = "0", required = false) int page,
             @RequestParam(name = "size", defaultValue = "10", required = false) int size,
-            Authentication connectedUser
+            @RequestParam(name = "withTotal", defaultValue = "true", required = false) boolean withTotal,
+            @RequestParam(name = "approximateTotal", defaultValue = "false", required = false) boolean approximateTotal,
+            @ParameterObject BookFilter filter,
+            Authentication connectedUser,
+            WebRequest webRequest
     ){
-        return ResponseEntity.ok(bookService.findAllBooksOwner(page, size, connectedUser));
+        TotalMode totalMode = TotalMode.of(withTotal, approximateTotal);
+        boolean revalidating = webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+        if(filter.isEmpty() && revalidating && webRequest.checkNotModified(
+                bookService.findAllBooksOwnerETag(page, size, totalMode, connectedUser))) {
+            return null;
+        }
+        return withETag(bookService.findAllBooksOwnerWithETag(
+                page,
+                size,
+                totalMode,
+                filter,
+                connectedUser
+        ), revalidating);
+    }
+
+    // the whole catalog of the connected user, as NDJSON
+    @GetMapping(value = "/owner/export", produces = "application/x-ndjson")
+    public void exportOwnerBooks(
+            Authentication connectedUser,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books.ndjson\"");
+        bookExportService.exportOwnerBooks(connectedUser, response.getOutputStream());
+    }
+
+    // the lending history of the books of the connected user, as NDJSON
+    @GetMapping(value = "/history/export", produces = "application/x-ndjson")
+    public void exportReturnedBooks(
+            Authentication connectedUser,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"history.ndjson\"");
+        bookExportService.exportReturnedBooks(connectedUser, response.getOutputStream());
     }
 
     @GetMapping("/borrowed")
     public ResponseEntity<PageResponse<BorrowedBookResponse>> findAllBorrowedBooks(
             @RequestParam(name = "page", defaultValue = "0", required = false) int page,
             @RequestParam(name = "size", defaultValue = "10", required = false) int size,
+            @RequestParam(name = "withTotal", defaultValue = "true", required = false) boolean withTotal,
+            @RequestParam(name = "approximateTotal", defaultValue = "false", required = false) boolean approximateTotal,
             Authentication connectedUser
     ){
-        return ResponseEntity.ok(bookService.findAllBorrowedBooks(page, size, connectedUser));
+        return ResponseEntity.ok(bookService.findAllBorrowedBooks(
+                page,
+                size,
+                TotalMode.of(withTotal, approximateTotal),
+                connectedUser
+        ));
+    }
+
+    // every loan of one of the books of the connected user
+    @GetMapping("/history/{book-id}")
+    public ResponseEntity<PageResponse<BorrowedBookResponse>> findBookHistory(
+            @PathVariable("book-id") Integer bookId,
+            @RequestParam(name = "page", defaultValue = "0", required = false) int page,
+            @RequestParam(name = "size", defaultValue = "10", required = false) int size,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(bookService.findBookHistory(bookId, page, size, connectedUser));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<PageResponse<BookResponse>> searchBooks(
+            @RequestParam(name = "q") String query,
+            @RequestParam(name = "page", defaultValue = "0", required = false) int page,
+            @RequestParam(name = "size", defaultValue = "10", required = false) int size,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(bookService.searchBooks(query, page, size, connectedUser));
+    }
+
+    // typeahead on titles and author names, most popular first
+    @GetMapping("/suggest")
+    public ResponseEntity<List<String>> suggest(
+            @RequestParam(name = "prefix") String prefix,
+            @RequestParam(name = "limit", defaultValue = "10", required = false) int limit
+    ) {
+        return ResponseEntity.ok(bookService.suggest(prefix, limit));
+    }
+
+    // keyset pagination: pass the nextCursor of the previous response to get the next page
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPageResponse<BookResponse>> findAllBooksByCursor(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "10", required = false) int size,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(bookService.findAllBooksByCursor(cursor, size, connectedUser));
+    }
+
+    @GetMapping("/owner/cursor")
+    public ResponseEntity<CursorPageResponse<BookResponse>> findAllBooksByOwnerByCursor(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "10", required = false) int size,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(bookService.findAllBooksOwnerByCursor(cursor, size, connectedUser));
+    }
+
+    @GetMapping("/borrowed/cursor")
+    public ResponseEntity<CursorPageResponse<BorrowedBookResponse>> findAllBorrowedBooksByCursor(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "10", required = false) int size,
+            // also read the archived loans, see BookTransactionHistoryArchiver
+            @RequestParam(name = "archived", defaultValue = "false", required = false) boolean archived,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(bookService.findAllBorrowedBooksByCursor(cursor, size, archived, connectedUser));
+    }
+
+    @GetMapping("/returned/cursor")
+    public ResponseEntity<CursorPageResponse<BorrowedBookResponse>> findAllReturnedBooksByCursor(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "10", required = false) int size,
+            // also read the archived loans, see BookTransactionHistoryArchiver
+            @RequestParam(name = "archived", defaultValue = "false", required = false) boolean archived,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(bookService.findAllReturnedBooksByCursor(cursor, size, archived, connectedUser));
     }
 
     @PatchMapping("/sharable/{book-id}")
@@ -93,6 +267,35 @@ public class BookController {
         return ResponseEntity.ok(bookService.returnBorrowedBook(bookId, connectedUser));
     }
 
+    // the returns waiting for the approval of the connected user
+    @GetMapping("/borrow/return/pending")
+    public ResponseEntity<PageResponse<BorrowedBookResponse>> findPendingReturnApprovals(
+            @RequestParam(name = "page", defaultValue = "0", required = false) int page,
+            @RequestParam(name = "size", defaultValue = "10", required = false) int size,
+            @RequestParam(name = "withTotal", defaultValue = "true", required = false) boolean withTotal,
+            @RequestParam(name = "approximateTotal", defaultValue = "false", required = false) boolean approximateTotal,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(bookService.findPendingReturnApprovals(
+                page,
+                size,
+                TotalMode.of(withTotal, approximateTotal),
+                connectedUser
+        ));
+    }
+
+    // approves several returns at once, with a result per id
+    @PatchMapping("/borrow/return/approve")
+    public ResponseEntity<List<ReturnApprovalResult>> approveReturnBorrowedBooks(
+            @Valid @RequestBody ReturnApprovalRequest returnApprovalRequest,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(bookService.approveReturnBorrowedBooks(
+                returnApprovalRequest.ids(),
+                connectedUser
+        ));
+    }
+
     @PatchMapping("/borrow/return/approve/{book-id}")
     public ResponseEntity<Integer> approveReturnBorrowedBook(
             @PathVariable("book-id") Integer bookId,
@@ -111,4 +314,35 @@ public class BookController {
         bookService.uploadBookCoverPicture(file, bookId, connectedUser);
         return ResponseEntity.accepted().build();
     }
+
+    // Returning a Resource lets Spring answer Range requests (206 + resource regions) and
+    // If-None-Match / If-Modified-Since (304) itself, streaming straight from the file channel
+    @GetMapping("/cover/{book-id}")
+    public ResponseEntity<Resource> findBookCover(
+            @PathVariable("book-id") Integer bookId
+    ) throws IOException {
+        FileSystemResource cover = bookService.findBookCover(bookId);
+        long lastModified = cover.lastModified();
+        String eTag = Integer.toHexString(cover.getPath().hashCode()) + "-" +
+                Long.toHexString(lastModified) + "-" +
+                Long.toHexString(cover.contentLength());
+
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate())
+                .contentType(MediaTypeFactory.getMediaType(cover)
+                        .orElse(MediaType.APPLICATION_OCTET_STREAM))
+                .body(cover);
+    }
+
+    // when revalidating, checkNotModified has already set the ETag header
+    private static ResponseEntity<PageResponse<BookResponse>> withETag(BookListing listing, boolean revalidating) {
+        if(listing.eTag() == null || revalidating) {
+            return ResponseEntity.ok(listing.page());
+        }
+        return ResponseEntity.ok()
+                .eTag(listing.eTag())
+                .body(listing.page());
+    }
 }
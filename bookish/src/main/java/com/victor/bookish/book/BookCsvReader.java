@@ -0,0 +1,120 @@
+package com.victor.bookish.book;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Minimal RFC 4180 reader: comma separated, fields optionally quoted with "",
+// quotes doubled inside quoted fields, quoted fields may span several lines.
+// A malformed record (a quote never closed) is skipped: readRecord throws a MalformedRecordException
+// and the reader goes on from the line after the first line of that record
+class BookCsvReader {
+
+    // A quoted field this long is a quote never closed rather than a book: no column holds that much.
+    // Also bounds what is read again after a malformed record
+    private static final int MAX_QUOTED_LENGTH = 10_000;
+
+    private final Reader reader;
+    private int next = -2;
+
+    // the text of the current record, and what is read again (before the reader) after a malformed one
+    private final StringBuilder recordText = new StringBuilder();
+    private String replay = "";
+    private int replayIndex;
+
+    BookCsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // the fields of the next record, null at the end of the input
+    List<String> readRecord() throws IOException {
+        recordText.setLength(0);
+        if(peek() == -1) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while(true) {
+            int c = read();
+            if(quoted) {
+                if(c == -1) {
+                    throw skipMalformed("Unterminated quoted field");
+                }
+                if(c == '"') {
+                    if(peek() == '"') {
+                        field.append((char) read());
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                    if(field.length() > MAX_QUOTED_LENGTH) {
+                        throw skipMalformed("Unterminated quoted field");
+                    }
+                }
+            } else if(c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if(c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if(c == '\r' && peek() == '\n') {
+                // end of record on the \n
+            } else if(c == '\n' || c == -1) {
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    // The lines read after the first line of the malformed record are read again as the next records
+    private MalformedRecordException skipMalformed(String message) throws IOException {
+        String lookahead = next >= 0 ? String.valueOf((char) next) : "";
+        String unread = replay.substring(replayIndex);
+        next = -2;
+        replayIndex = 0;
+
+        int lineBreak = recordText.indexOf("\n");
+        if(lineBreak >= 0) {
+            replay = recordText.substring(lineBreak + 1) + lookahead + unread;
+        } else {
+            // the record never left its first line: skip the rest of it
+            replay = lookahead + unread;
+            int c;
+            do {
+                c = read();
+            } while(c != -1 && c != '\n');
+        }
+        recordText.setLength(0);
+        return new MalformedRecordException(message);
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        next = -2;
+        if(c != -1) {
+            recordText.append((char) c);
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if(next == -2) {
+            next = replayIndex < replay.length() ? replay.charAt(replayIndex++) : reader.read();
+        }
+        return next;
+    }
+
+    // a record that could not be parsed, the reader is already on the next one
+    static class MalformedRecordException extends IOException {
+
+        MalformedRecordException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.victor.bookish.book;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.victor.bookish.history.BookTransactionHistoryRepository;
+import com.victor.bookish.user.UserPrincipal;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Exports a whole listing as NDJSON (one JSON document per line) in a single query.
+// The rows are streamed from the db cursor to the response, so the memory used does
+// not depend on the number of rows
+@Service
+@RequiredArgsConstructor
+public class BookExportService {
+
+    // rows written between two flushes of the response (and clears of the persistence context)
+    private static final int FLUSH_EVERY = 500;
+
+    private final BookMapper bookMapper;
+    private final BookRepository bookRepository;
+    private final BookTransactionHistoryRepository bookTransactionHistoryRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    // the cursor of a Stream query only lives as long as the transaction
+    @Transactional(readOnly = true)
+    public void exportOwnerBooks(Authentication connectedUser, OutputStream out) throws IOException {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        try (Stream<BookSummary> books = bookRepository.streamOwnerBooks(user.getId())) {
+            writeLines(books.map(bookMapper::toBookResponse), out);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportReturnedBooks(Authentication connectedUser, OutputStream out) throws IOException {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        try (Stream<?> histories = bookTransactionHistoryRepository.streamReturnedBooks(user.getId())
+                .map(bookMapper::toBorrowedBookResponse)) {
+            writeLines(histories, out);
+        }
+    }
+
+    private void writeLines(Stream<?> rows, OutputStream out) throws IOException {
+        int written = 0;
+        for(Iterator<?> iterator = rows.iterator(); iterator.hasNext();) {
+            // writeValueAsBytes rather than writeValue(out, ...), which would close the response
+            out.write(objectMapper.writeValueAsBytes(iterator.next()));
+            out.write('\n');
+
+            if(++written % FLUSH_EVERY == 0) {
+                out.flush();
+                // drops the entities read so far (no-op for the projections)
+                entityManager.clear();
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,36 @@
+package com.victor.bookish.book;
+
+import lombok.Builder;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+// Optional filters of the book listings, every non-null criterion is ANDed
+// (see BookSpecification.matching)
+@Builder
+public record BookFilter(
+        String author,
+        String isbnPrefix,
+        Double minRating,
+        Boolean available, // not currently borrowed
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        LocalDate createdFrom,
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        LocalDate createdTo,
+        Boolean shareable,
+        Boolean archived
+) {
+
+    public static final BookFilter NONE = new BookFilter(null, null, null, null, null, null, null, null);
+
+    public boolean isEmpty() {
+        return (author == null || author.isBlank())
+                && (isbnPrefix == null || isbnPrefix.isBlank())
+                && minRating == null
+                && available == null
+                && createdFrom == null
+                && createdTo == null
+                && shareable == null
+                && archived == null;
+    }
+}
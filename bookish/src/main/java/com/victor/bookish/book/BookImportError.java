@@ -0,0 +1,8 @@
+package com.victor.bookish.book;
+
+// row is the 1-based line (NDJSON) or record (CSV, header excluded) number in the upload
+public record BookImportError(
+        long row,
+        String message
+) {
+}
@@ -0,0 +1,13 @@
+package com.victor.bookish.book;
+
+import java.util.List;
+
+public record BookImportResponse(
+        long imported,
+        long rejected,
+        // only the first errors are listed, see application.books.bulk.max-reported-errors
+        List<BookImportError> errors,
+        long durationMillis,
+        double rowsPerSecond
+) {
+}
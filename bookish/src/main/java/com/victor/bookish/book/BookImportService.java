@@ -0,0 +1,259 @@
+package com.victor.bookish.book;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.victor.bookish.exception.OperationNotPermittedException;
+import com.victor.bookish.search.BookSearchIndex;
+import com.victor.bookish.search.BookSuggestionTrie;
+import com.victor.bookish.search.IndexedBook;
+import com.victor.bookish.user.User;
+import com.victor.bookish.user.UserPrincipal;
+import com.victor.bookish.user.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Bulk creation of books from a CSV or NDJSON upload, read as a stream.
+// Each row is validated on its own, the valid ones are inserted in batches (one transaction
+// and one flush per batch, JDBC batching in the flush, see HibernateBatchConfig)
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BookImportService {
+
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final List<String> CSV_COLUMNS = List.of("title", "authorName", "isbn", "synopsis", "sharable");
+
+    private final BookMapper bookMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggestionTrie bookSuggestionTrie;
+    private final UserRepository userRepository;
+
+    @Value("${application.books.bulk.batch-size:500}")
+    private int batchSize;
+
+    @Value("${application.books.bulk.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    public BookImportResponse importBooks(
+            InputStream input,
+            MediaType contentType,
+            Authentication connectedUser
+    ) throws IOException {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+        Import bookImport = new Import(user);
+
+        long start = System.nanoTime();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        if(TEXT_CSV.isCompatibleWith(contentType)) {
+            readCsv(reader, bookImport);
+        } else if(APPLICATION_NDJSON.isCompatibleWith(contentType)) {
+            readNdjson(reader, bookImport);
+        } else {
+            throw new OperationNotPermittedException("Bulk import only accepts text/csv or application/x-ndjson");
+        }
+        bookImport.flush();
+        long durationMillis = (System.nanoTime() - start) / 1_000_000;
+
+        double rowsPerSecond = durationMillis == 0
+                ? bookImport.imported
+                : bookImport.imported * 1000.0 / durationMillis;
+        log.info("Bulk import of user {}: {} book(s) imported, {} rejected in {} ms ({} rows/s)",
+                user.getId(), bookImport.imported, bookImport.rejected, durationMillis, Math.round(rowsPerSecond));
+
+        return new BookImportResponse(
+                bookImport.imported,
+                bookImport.rejected,
+                bookImport.errors,
+                durationMillis,
+                rowsPerSecond
+        );
+    }
+
+    private void readNdjson(BufferedReader reader, Import bookImport) {
+        long row = 0;
+        for(String line : (Iterable<String>) reader.lines()::iterator) {
+            row++;
+            if(line.isBlank()) {
+                continue;
+            }
+            try {
+                bookImport.add(row, objectMapper.readValue(line, BookRequest.class));
+            } catch (JsonProcessingException e) {
+                bookImport.reject(row, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private void readCsv(BufferedReader reader, Import bookImport) throws IOException {
+        BookCsvReader csv = new BookCsvReader(reader);
+
+        List<String> header;
+        try {
+            header = csv.readRecord();
+        } catch (BookCsvReader.MalformedRecordException e) {
+            throw new OperationNotPermittedException("Malformed CSV header: " + e.getMessage());
+        }
+        if(header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for(int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).strip(), i);
+        }
+        if(!columns.keySet().containsAll(CSV_COLUMNS.subList(0, 4))) {
+            throw new OperationNotPermittedException("The CSV header must name the columns " + CSV_COLUMNS);
+        }
+
+        long row = 0;
+        while(true) {
+            List<String> fields;
+            try {
+                fields = csv.readRecord();
+            } catch (BookCsvReader.MalformedRecordException e) {
+                // reported like an invalid row, the import goes on with the next record
+                bookImport.reject(++row, "Malformed CSV: " + e.getMessage());
+                continue;
+            }
+            if(fields == null) {
+                break;
+            }
+            row++;
+            if(fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            bookImport.add(row, new BookRequest(
+                    null,
+                    field(fields, columns, "title"),
+                    field(fields, columns, "authorName"),
+                    field(fields, columns, "isbn"),
+                    field(fields, columns, "synopsis"),
+                    Boolean.parseBoolean(field(fields, columns, "sharable"))
+            ));
+        }
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        return index == null || index >= fields.size() ? null : fields.get(index);
+    }
+
+    // the state of one upload: the pending batch and the counters
+    private class Import {
+
+        private final User owner;
+        private final String ownerName;
+        private final List<Book> batch = new ArrayList<>();
+        private final List<Long> batchRows = new ArrayList<>();
+        private final List<BookImportError> errors = new ArrayList<>();
+        private long imported;
+        private long rejected;
+
+        Import(UserPrincipal user) {
+            // a reference is enough for the foreign key, the name is only for the search index
+            this.owner = userRepository.getReferenceById(user.getId());
+            this.ownerName = user.fullName();
+        }
+
+        void add(long row, BookRequest bookRequest) {
+            if(bookRequest.id() != null) {
+                reject(row, "id must not be set, the bulk import only creates books");
+                return;
+            }
+            Set<ConstraintViolation<BookRequest>> violations = validator.validate(bookRequest);
+            if(!violations.isEmpty()) {
+                reject(row, violations.stream()
+                        .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+                return;
+            }
+
+            Book book = bookMapper.toBook(bookRequest);
+            book.setOwner(owner);
+            batch.add(book);
+            batchRows.add(row);
+            if(batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void reject(long row, String message) {
+            rejected++;
+            if(errors.size() < maxReportedErrors) {
+                errors.add(new BookImportError(row, message));
+            }
+        }
+
+        void flush() {
+            if(batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    batch.forEach(entityManager::persist);
+                    entityManager.flush();
+                    entityManager.clear();
+                });
+                imported += batch.size();
+                batch.forEach(this::index);
+            } catch (RuntimeException e) {
+                // a failing row rolls the whole batch back, so the batch is replayed
+                // row by row to keep the valid ones and report the failing ones
+                for(int i = 0; i < batch.size(); i++) {
+                    Book book = batch.get(i);
+                    book.setId(null);
+                    book.setVersion(0);
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> entityManager.persist(book));
+                        imported++;
+                        index(book);
+                    } catch (RuntimeException rowException) {
+                        reject(batchRows.get(i), "Could not be saved: " + rootCauseMessage(rowException));
+                    }
+                }
+            }
+            batch.clear();
+            batchRows.clear();
+        }
+
+        private void index(Book book) {
+            IndexedBook indexedBook = IndexedBook.of(book, ownerName);
+            bookSearchIndex.index(indexedBook);
+            bookSuggestionTrie.index(indexedBook);
+        }
+    }
+
+    private static String rootCauseMessage(Throwable throwable) {
+        Throwable cause = throwable;
+        while(cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+}
@@ -0,0 +1,10 @@
+package com.victor.bookish.book;
+
+import com.victor.bookish.common.PageResponse;
+
+// a listing page and the weak ETag of its rows, null for the filtered listings (no ETag)
+public record BookListing(
+        PageResponse<BookResponse> page,
+        String eTag
+) {
+}
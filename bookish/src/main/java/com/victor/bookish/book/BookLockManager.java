@@ -0,0 +1,22 @@
+package com.victor.bookish.book;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Mutual exclusion per book for the borrow/return/approve workflows: the action runs in its own
+// transaction, and no other action on the same book runs until that transaction is over.
+// application.books.lock.mode picks the implementation:
+// - local (default): striped locks in this JVM, see StripedBookLockManager
+// - advisory: Postgres advisory locks, for several instances, see AdvisoryBookLockManager
+public interface BookLockManager {
+
+    // throws BookLockTimeoutException when the lock is not acquired within application.books.lock.timeout
+    default <T> T withLock(Integer bookId, Supplier<T> action) {
+        return withLocks(List.of(bookId), action);
+    }
+
+    // the locks of several books for a single transaction, taken in a fixed order so two callers
+    // cannot deadlock. The timeout applies to each lock
+    <T> T withLocks(Collection<Integer> bookIds, Supplier<T> action);
+}
@@ -1,7 +1,9 @@
 package com.victor.bookish.book;
 
-import com.victor.bookish.file.FileUtils;
 import com.victor.bookish.history.BookTransactionHistory;
+import com.victor.bookish.history.HistoryRow;
+import com.victor.bookish.ledger.LoanSummary;
+import com.victor.bookish.search.IndexedBook;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -30,7 +32,37 @@ public class BookMapper {
                 .archived(book.isArchived())
                 .sharable(book.isShareable())
                 .owner(book.getOwner().fullName())
-                .cover(FileUtils.readFileFromLocation(book.getBookCover()))
+                .coverUrl(toCoverUrl(book.getId(), book.getBookCover()))
+                .build();
+    }
+
+    public BookResponse toBookResponse(BookSummary bookSummary) {
+        return BookResponse.builder()
+                .id(bookSummary.id())
+                .title(bookSummary.title())
+                .authorName(bookSummary.authorName())
+                .isbn(bookSummary.isbn())
+                .synopsis(bookSummary.synopsis())
+                .rate(Book.computeRate(bookSummary.ratingSum(), bookSummary.ratingCount()))
+                .archived(bookSummary.archived())
+                .sharable(bookSummary.shareable())
+                .owner(bookSummary.ownerFirstname() + " " + bookSummary.ownerLastname())
+                .coverUrl(toCoverUrl(bookSummary.id(), bookSummary.bookCover()))
+                .build();
+    }
+
+    public BookResponse toBookResponse(IndexedBook indexedBook) {
+        return BookResponse.builder()
+                .id(indexedBook.id())
+                .title(indexedBook.title())
+                .authorName(indexedBook.authorName())
+                .isbn(indexedBook.isbn())
+                .synopsis(indexedBook.synopsis())
+                .rate(Book.computeRate(indexedBook.ratingSum(), indexedBook.ratingCount()))
+                .archived(indexedBook.archived())
+                .sharable(indexedBook.shareable())
+                .owner(indexedBook.owner())
+                .coverUrl(toCoverUrl(indexedBook.id(), indexedBook.bookCover()))
                 .build();
     }
 
@@ -62,4 +94,37 @@ public class BookMapper {
                 .returnApproved(bookTransactionHistory.isReturnApproved())
                 .build();
     }
+
+    public BorrowedBookResponse toBorrowedBookResponse(LoanSummary loanSummary) {
+        return BorrowedBookResponse.builder()
+                .id(loanSummary.loanId())
+                .title(loanSummary.title())
+                .authorName(loanSummary.authorName())
+                .isbn(loanSummary.isbn())
+                .rate(Book.computeRate(loanSummary.ratingSum(), loanSummary.ratingCount()))
+                .returned(loanSummary.returned())
+                .returnApproved(loanSummary.returnApproved())
+                .build();
+    }
+
+    public BorrowedBookResponse toBorrowedBookResponse(HistoryRow historyRow) {
+        return BorrowedBookResponse.builder()
+                .id(historyRow.getId())
+                .title(historyRow.getTitle())
+                .authorName(historyRow.getAuthorName())
+                .isbn(historyRow.getIsbn())
+                .rate(Book.computeRate(historyRow.getRatingSum(), historyRow.getRatingCount()))
+                .returned(historyRow.getReturned())
+                .returnApproved(historyRow.getReturnApproved())
+                .build();
+    }
+
+    // the version parameter changes whenever a new cover is uploaded (new file name),
+    // so clients can cache the cover for a long time
+    public String toCoverUrl(Integer bookId, String bookCover) {
+        if(bookCover == null || bookCover.isBlank()) {
+            return null;
+        }
+        return "books/cover/" + bookId + "?v=" + Integer.toHexString(bookCover.hashCode());
+    }
 }
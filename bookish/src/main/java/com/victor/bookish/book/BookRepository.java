@@ -1,16 +1,42 @@
 package com.victor.bookish.book;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
-public interface BookRepository  extends JpaRepository<Book, Integer>, JpaSpecificationExecutor<Book> {
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+public interface BookRepository  extends JpaRepository<Book, Integer>, JpaSpecificationExecutor<Book> {
 
-    @Query("""
-            SELECT book
+    // The listings below select BookSummary projections: one statement per page,
+    // no lazy owner/feedback loads and no managed entities to dirty-check
+    @Query(value = """
+            SELECT new com.victor.bookish.book.BookSummary(
+                book.id, book.title, book.authorName, book.isbn, book.synopsis,
+                owner.id, owner.firstname, owner.lastname, book.bookCover,
+                book.ratingSum, book.ratingCount, book.archived, book.shareable,
+                book.createdDate, book.version)
+            FROM Book book
+            JOIN book.owner owner
+            WHERE book.archived = false
+            AND book.shareable = true
+            AND owner.id != :userId
+            """,
+            countQuery = """
+            SELECT COUNT(book)
             FROM Book book
             WHERE book.archived = false
             AND book.shareable = true
@@ -19,5 +45,293 @@ public interface BookRepository  extends JpaRepository<Book, Integer>, JpaSpecif
     // a JpaRepository method that takes a Pageable as a parameter tells Spring that
     // pagination is required?
     // No. I think returning a 'Page' class does this...?
-    Page<Book> findAllDisplayableBooks(Pageable pageable, Integer userId);
+    Page<BookSummary> findAllDisplayableBooks(Pageable pageable, Integer userId);
+
+    // Slice variants: Spring Data fetches size + 1 rows instead of issuing a COUNT
+    @Query("""
+            SELECT new com.victor.bookish.book.BookSummary(
+                book.id, book.title, book.authorName, book.isbn, book.synopsis,
+                owner.id, owner.firstname, owner.lastname, book.bookCover,
+                book.ratingSum, book.ratingCount, book.archived, book.shareable,
+                book.createdDate, book.version)
+            FROM Book book
+            JOIN book.owner owner
+            WHERE book.archived = false
+            AND book.shareable = true
+            AND owner.id != :userId
+            """)
+    Slice<BookSummary> findDisplayableBooksSlice(Pageable pageable, Integer userId);
+
+    @Query("""
+            SELECT COUNT(book)
+            FROM Book book
+            WHERE book.archived = false
+            AND book.shareable = true
+            AND book.owner.id != :userId
+            """)
+    long countDisplayableBooks(Integer userId);
+
+    @Query("""
+            SELECT new com.victor.bookish.book.BookSummary(
+                book.id, book.title, book.authorName, book.isbn, book.synopsis,
+                owner.id, owner.firstname, owner.lastname, book.bookCover,
+                book.ratingSum, book.ratingCount, book.archived, book.shareable,
+                book.createdDate, book.version)
+            FROM Book book
+            JOIN book.owner owner
+            WHERE owner.id = :ownerId
+            """)
+    Slice<BookSummary> findOwnerBooksSlice(Pageable pageable, Integer ownerId);
+
+    @Query(value = """
+            SELECT new com.victor.bookish.book.BookSummary(
+                book.id, book.title, book.authorName, book.isbn, book.synopsis,
+                owner.id, owner.firstname, owner.lastname, book.bookCover,
+                book.ratingSum, book.ratingCount, book.archived, book.shareable,
+                book.createdDate, book.version)
+            FROM Book book
+            JOIN book.owner owner
+            WHERE owner.id = :ownerId
+            """,
+            countQuery = """
+            SELECT COUNT(book)
+            FROM Book book
+            WHERE book.owner.id = :ownerId
+            """)
+    Page<BookSummary> findOwnerBooks(Pageable pageable, Integer ownerId);
+
+    @Query("""
+            SELECT COUNT(book)
+            FROM Book book
+            WHERE book.owner.id = :ownerId
+            """)
+    long countOwnerBooks(Integer ownerId);
+
+    // keyset variants: seek past the (createdDate, id) of the previous page's last row
+    // instead of an OFFSET, the pageable only carries the limit
+    @Query("""
+            SELECT new com.victor.bookish.book.BookSummary(
+                book.id, book.title, book.authorName, book.isbn, book.synopsis,
+                owner.id, owner.firstname, owner.lastname, book.bookCover,
+                book.ratingSum, book.ratingCount, book.archived, book.shareable,
+                book.createdDate, book.version)
+            FROM Book book
+            JOIN book.owner owner
+            WHERE book.archived = false
+            AND book.shareable = true
+            AND owner.id != :userId
+            AND (book.createdDate, book.id) < (:createdDate, :id)
+            ORDER BY book.createdDate DESC, book.id DESC
+            """)
+    List<BookSummary> findDisplayableBooksAfter(
+            Integer userId,
+            LocalDateTime createdDate,
+            Integer id,
+            Pageable pageable
+    );
+
+    @Query("""
+            SELECT new com.victor.bookish.book.BookSummary(
+                book.id, book.title, book.authorName, book.isbn, book.synopsis,
+                owner.id, owner.firstname, owner.lastname, book.bookCover,
+                book.ratingSum, book.ratingCount, book.archived, book.shareable,
+                book.createdDate, book.version)
+            FROM Book book
+            JOIN book.owner owner
+            WHERE owner.id = :ownerId
+            AND (book.createdDate, book.id) < (:createdDate, :id)
+            ORDER BY book.createdDate DESC, book.id DESC
+            """)
+    List<BookSummary> findOwnerBooksAfter(
+            Integer ownerId,
+            LocalDateTime createdDate,
+            Integer id,
+            Pageable pageable
+    );
+
+    // filtered listings (BookSpecification), the owner is fetched in the same query
+    @Override
+    @EntityGraph(attributePaths = "owner")
+    Page<Book> findAll(Specification<Book> specification, Pageable pageable);
+
+    // walks the whole table in id order, used to (re)build the in-memory search structures
+    @Query("""
+            SELECT new com.victor.bookish.book.BookSummary(
+                book.id, book.title, book.authorName, book.isbn, book.synopsis,
+                owner.id, owner.firstname, owner.lastname, book.bookCover,
+                book.ratingSum, book.ratingCount, book.archived, book.shareable,
+                book.createdDate, book.version)
+            FROM Book book
+            JOIN book.owner owner
+            WHERE book.id > :id
+            ORDER BY book.id
+            """)
+    List<BookSummary> findSummariesAfterId(Integer id, Pageable pageable);
+
+    // streamed with a server-side cursor (fetch size) for the NDJSON export, see BookExportService
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+            SELECT new com.victor.bookish.book.BookSummary(
+                book.id, book.title, book.authorName, book.isbn, book.synopsis,
+                owner.id, owner.firstname, owner.lastname, book.bookCover,
+                book.ratingSum, book.ratingCount, book.archived, book.shareable,
+                book.createdDate, book.version)
+            FROM Book book
+            JOIN book.owner owner
+            WHERE owner.id = :ownerId
+            ORDER BY book.createdDate DESC, book.id DESC
+            """)
+    Stream<BookSummary> streamOwnerBooks(Integer ownerId);
+
+    // only the cover path, so serving a cover never loads the whole book (and its owner)
+    @Query("""
+            SELECT book.bookCover
+            FROM Book book
+            WHERE book.id = :bookId
+            """)
+    Optional<String> findBookCoverById(Integer bookId);
+
+    // compare-and-set of the borrower: only one of concurrent borrowers gets the row updated.
+    // The version is bumped so an entity save based on an older read cannot overwrite the borrower
+    @Modifying
+    @Query("""
+            UPDATE Book book
+            SET book.borrowerId = :userId,
+                book.version = book.version + 1
+            WHERE book.id = :bookId
+            AND book.borrowerId IS NULL
+            AND book.archived = false
+            AND book.shareable = true
+            AND book.owner.id <> :userId
+            """)
+    int markBorrowed(Integer bookId, Integer userId);
+
+    @Modifying
+    @Query("""
+            UPDATE Book book
+            SET book.borrowerId = NULL,
+                book.version = book.version + 1
+            WHERE book.id = :bookId
+            AND book.borrowerId = :userId
+            """)
+    int clearBorrower(Integer bookId, Integer userId);
+
+    // batch approval of returns, the borrowers are the ones of the approved loans
+    @Modifying
+    @Query("""
+            UPDATE Book book
+            SET book.borrowerId = NULL,
+                book.version = book.version + 1
+            WHERE book.id IN :bookIds
+            """)
+    int clearBorrowers(Collection<Integer> bookIds);
+
+    // sets the borrower of the books lent before the borrowerId column existed
+    @Modifying
+    @Query("""
+            UPDATE Book book
+            SET book.borrowerId = (
+                    SELECT MAX(history.user.id)
+                    FROM BookTransactionHistory history
+                    WHERE history.book.id = book.id
+                    AND history.returnApproved = false),
+                book.version = book.version + 1
+            WHERE book.borrowerId IS NULL
+            AND EXISTS (
+                    SELECT history.id
+                    FROM BookTransactionHistory history
+                    WHERE history.book.id = book.id
+                    AND history.returnApproved = false)
+            """)
+    int backfillBorrowers();
+
+    // version lookups for the conditional GETs: the rows are neither loaded nor mapped
+    @Query("""
+            SELECT new com.victor.bookish.book.BookVersion(
+                book.id, book.version, COALESCE(book.lastModifiedDate, book.createdDate))
+            FROM Book book
+            WHERE book.id = :bookId
+            """)
+    Optional<BookVersion> findVersionById(Integer bookId);
+
+    @Query(value = """
+            SELECT new com.victor.bookish.book.BookVersion(
+                book.id, book.version, COALESCE(book.lastModifiedDate, book.createdDate))
+            FROM Book book
+            WHERE book.archived = false
+            AND book.shareable = true
+            AND book.owner.id != :userId
+            """,
+            countQuery = """
+            SELECT COUNT(book)
+            FROM Book book
+            WHERE book.archived = false
+            AND book.shareable = true
+            AND book.owner.id != :userId
+            """)
+    Page<BookVersion> findDisplayableBookVersions(Pageable pageable, Integer userId);
+
+    @Query("""
+            SELECT new com.victor.bookish.book.BookVersion(
+                book.id, book.version, COALESCE(book.lastModifiedDate, book.createdDate))
+            FROM Book book
+            WHERE book.archived = false
+            AND book.shareable = true
+            AND book.owner.id != :userId
+            """)
+    Slice<BookVersion> findDisplayableBookVersionsSlice(Pageable pageable, Integer userId);
+
+    @Query(value = """
+            SELECT new com.victor.bookish.book.BookVersion(
+                book.id, book.version, COALESCE(book.lastModifiedDate, book.createdDate))
+            FROM Book book
+            WHERE book.owner.id = :ownerId
+            """,
+            countQuery = """
+            SELECT COUNT(book)
+            FROM Book book
+            WHERE book.owner.id = :ownerId
+            """)
+    Page<BookVersion> findOwnerBookVersions(Pageable pageable, Integer ownerId);
+
+    @Query("""
+            SELECT new com.victor.bookish.book.BookVersion(
+                book.id, book.version, COALESCE(book.lastModifiedDate, book.createdDate))
+            FROM Book book
+            WHERE book.owner.id = :ownerId
+            """)
+    Slice<BookVersion> findOwnerBookVersionsSlice(Pageable pageable, Integer ownerId);
+
+    // a single UPDATE, so concurrent feedbacks on the same book never lose an increment
+    @Modifying
+    @Query("""
+            UPDATE Book book
+            SET book.ratingSum = book.ratingSum + :note,
+                book.ratingCount = book.ratingCount + 1,
+                book.ratingAverage = (book.ratingSum + :note) / (book.ratingCount + 1),
+                book.version = book.version + 1,
+                book.lastModifiedDate = LOCAL DATETIME
+            WHERE book.id = :bookId
+            """)
+    int addRating(Integer bookId, double note);
+
+    // only touches the books whose aggregate drifted from the Feedback table
+    @Modifying
+    @Query("""
+            UPDATE Book book
+            SET book.ratingSum = COALESCE(
+                    (SELECT SUM(feedback.note) FROM Feedback feedback WHERE feedback.book.id = book.id), 0),
+                book.ratingCount = CAST(
+                    (SELECT COUNT(feedback) FROM Feedback feedback WHERE feedback.book.id = book.id) AS Integer),
+                book.ratingAverage = COALESCE(
+                    (SELECT AVG(feedback.note) FROM Feedback feedback WHERE feedback.book.id = book.id), 0),
+                book.version = book.version + 1,
+                book.lastModifiedDate = LOCAL DATETIME
+            WHERE book.ratingCount <> (SELECT COUNT(feedback) FROM Feedback feedback WHERE feedback.book.id = book.id)
+            OR book.ratingSum <> COALESCE(
+                    (SELECT SUM(feedback.note) FROM Feedback feedback WHERE feedback.book.id = book.id), 0)
+            OR book.ratingAverage <> COALESCE(
+                    (SELECT AVG(feedback.note) FROM Feedback feedback WHERE feedback.book.id = book.id), 0)
+            """)
+    int recomputeRatings();
 }
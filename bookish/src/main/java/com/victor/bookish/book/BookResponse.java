@@ -15,7 +15,8 @@ public class BookResponse {
     private String isbn;
     private String synopsis;
     private String owner;
-    private byte[] cover;
+    // relative link to GET books/cover/{book-id}, the bytes are no longer inlined
+    private String coverUrl;
     private double rate;
     private boolean archived;
     private boolean sharable;
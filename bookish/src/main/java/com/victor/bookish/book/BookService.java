@@ -1,23 +1,54 @@
 package com.victor.bookish.book;
 
+import com.victor.bookish.common.CountCache;
+import com.victor.bookish.common.CursorPageResponse;
+import com.victor.bookish.common.PageCursor;
 import com.victor.bookish.common.PageResponse;
+import com.victor.bookish.common.TotalMode;
+import com.victor.bookish.config.CacheConfig;
 import com.victor.bookish.exception.OperationNotPermittedException;
 import com.victor.bookish.file.FileStorageService;
+import com.victor.bookish.file.FileUtils;
+import com.victor.bookish.history.ApprovedReturn;
 import com.victor.bookish.history.BookTransactionHistory;
 import com.victor.bookish.history.BookTransactionHistoryRepository;
-import com.victor.bookish.user.User;
+import com.victor.bookish.history.HistoryRow;
+import com.victor.bookish.ledger.LendingEventType;
+import com.victor.bookish.ledger.LendingLedger;
+import com.victor.bookish.ledger.LoanSummary;
+import com.victor.bookish.ledger.LoanViewRepository;
+import com.victor.bookish.reservation.ReservationService;
+import com.victor.bookish.search.BookSearchIndex;
+import com.victor.bookish.search.BookSuggestionTrie;
+import com.victor.bookish.search.IndexedBook;
+import com.victor.bookish.stats.LendingStats;
+import com.victor.bookish.user.UserPrincipal;
+import com.victor.bookish.user.UserRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,9 +58,25 @@ public class BookService {
     private final BookRepository bookRepository;
     private final BookTransactionHistoryRepository bookTransactionHistoryRepository;
     private final FileStorageService fileStorageService;
-
+    private final CountCache countCache;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggestionTrie bookSuggestionTrie;
+    private final BookLockManager bookLockManager;
+    private final ReservationService reservationService;
+    private final LendingLedger lendingLedger;
+    private final LendingStats lendingStats;
+    private final LoanViewRepository loanViewRepository;
+    private final UserRepository userRepository;
+
+    @Value("${application.loans.duration:14d}")
+    private Duration loanDuration;
+
+    @Value("${application.books.cursor.max-size:100}")
+    private int maxCursorSize;
+
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookRequest.id()", condition = "#bookRequest.id() != null")
     public Integer save(BookRequest bookRequest, Authentication connectedUser) {
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         Book book = bookMapper.toBook(bookRequest);
                 /*Book.builder()
@@ -39,11 +86,38 @@ public class BookService {
                 .synopsis(bookRequest.synopsis())
                 .build();*/
 
-        book.setOwner(user);
+        book.setOwner(userRepository.getReferenceById(user.getId()));
+
+        if(book.getId() != null) {
+            // updating: keep what the request does not carry (rating aggregate, cover, archived)
+            Book existingBook = bookRepository.findById(book.getId())
+                    .orElseThrow(() ->
+                            new EntityNotFoundException("No book found with ID:: " + bookRequest.id()));
+
+            if(!Objects.equals(existingBook.getOwner().getId(), user.getId())) {
+                throw new OperationNotPermittedException("You can only update your own book");
+            }
+
+            book.setRatingSum(existingBook.getRatingSum());
+            book.setRatingCount(existingBook.getRatingCount());
+            book.setRatingAverage(existingBook.getRatingAverage());
+            book.setBookCover(existingBook.getBookCover());
+            book.setArchived(existingBook.isArchived());
+            book.setBorrowerId(existingBook.getBorrowerId());
+            // the version read just above, not one sent by the client: an update committed
+            // between that read and this save fails (optimistic lock) instead of being overwritten
+            book.setVersion(existingBook.getVersion());
+        }
+
+        Book savedBook = bookRepository.save(book);
+        // the owner is a reference, its name comes from the principal
+        indexBook(IndexedBook.of(savedBook, user.fullName()));
 
-        return bookRepository.save(book).getId();
+        return savedBook.getId();
     }
 
+    @Cacheable(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId")
+    @Transactional(readOnly = true)
     public BookResponse findById(Integer bookId) {
         return bookRepository.findById(bookId)
                 .map(bookMapper::toBookResponse)
@@ -51,136 +125,535 @@ public class BookService {
                         new EntityNotFoundException("No book found with the ID:: " + bookId));
     }
 
+    // validators of GET books/{book-id}: one version lookup, the book itself is neither loaded nor mapped
+    @Transactional(readOnly = true)
+    public BookVersion findBookVersion(Integer bookId) {
+        return bookRepository.findVersionById(bookId)
+                .orElseThrow(() ->
+                        new EntityNotFoundException("No book found with the ID:: " + bookId));
+    }
+
+    public FileSystemResource findBookCover(Integer bookId) {
+        String bookCover = bookRepository.findBookCoverById(bookId)
+                .orElseThrow(() ->
+                        new EntityNotFoundException("No cover found for the book with ID:: " + bookId));
+
+        FileSystemResource cover = FileUtils.getFileAsResource(bookCover);
+        if(cover == null) {
+            throw new EntityNotFoundException("No cover found for the book with ID:: " + bookId);
+        }
+        return cover;
+    }
+
+    @Transactional(readOnly = true)
     public PageResponse<BookResponse> findAllBooks(
             int page,
             int size,
+            TotalMode totalMode,
+            BookFilter filter,
+            Authentication connectedUser
+    ) {
+        return findAllBooksWithETag(page, size, totalMode, filter, connectedUser).page();
+    }
+
+    // the ETag comes from the rows of the listing itself, no extra statement
+    @Transactional(readOnly = true)
+    public BookListing findAllBooksWithETag(
+            int page,
+            int size,
+            TotalMode totalMode,
+            BookFilter filter,
             Authentication connectedUser
     ) {
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         Pageable pageable = PageRequest.of(
                 page,
                 size,
                 Sort.by("createdDate").descending());
 
-        Page<Book> books = bookRepository.findAllDisplayableBooks(pageable, user.getId());
+        if(!filter.isEmpty()) {
+            return new BookListing(findAllMatching(
+                    BookSpecification.displayableTo(user.getId())
+                            .and(BookSpecification.matching(filter)),
+                    pageable
+            ), null);
+        }
+
+        // a Page (with its COUNT query) only when the exact totals are requested
+        Slice<BookSummary> books = totalMode == TotalMode.EXACT
+                ? bookRepository.findAllDisplayableBooks(pageable, user.getId())
+                : bookRepository.findDisplayableBooksSlice(pageable, user.getId());
 
         // List<BookResponse> because PageResponse takes List<T> as one of its fields
-        // .stream() because Page extends Slice which extends Streamable
+        // .stream() because Slice extends Streamable
         List<BookResponse> bookResponses = books.stream()
                 .map(bookMapper::toBookResponse)
                 .toList();
 
-        return new PageResponse<>(
-                bookResponses,
-                books.getNumber(),
-                books.getSize(),
-                books.getTotalElements(),
-                books.getTotalPages(),
-                books.isFirst(),
-                books.isLast()
+        Long approximateTotal = totalMode == TotalMode.APPROXIMATE
+                ? countCache.get("books:displayable:" + user.getId(),
+                        () -> bookRepository.countDisplayableBooks(user.getId()))
+                : null;
+
+        return new BookListing(
+                PageResponse.of(books, bookResponses, approximateTotal),
+                toWeakETag(books.map(BookService::toBookVersion), totalMode, approximateTotal)
         );
     }
 
+    @Transactional(readOnly = true)
     public PageResponse<BookResponse> findAllBooksOwner(
             int page,
             int size,
+            TotalMode totalMode,
+            BookFilter filter,
             Authentication connectedUser
     ) {
-        User user = (User) connectedUser.getPrincipal();
+        return findAllBooksOwnerWithETag(page, size, totalMode, filter, connectedUser).page();
+    }
+
+    @Transactional(readOnly = true)
+    public BookListing findAllBooksOwnerWithETag(
+            int page,
+            int size,
+            TotalMode totalMode,
+            BookFilter filter,
+            Authentication connectedUser
+    ) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         Pageable pageable = PageRequest.of(
                 page,
                 size,
                 Sort.by("createdDate").descending());
 
-        // using Specification
-        Page<Book> books = bookRepository
-                .findAll(BookSpecification.withOwnerId(user.getId()), pageable);
+        if(!filter.isEmpty()) {
+            return new BookListing(findAllMatching(
+                    BookSpecification.withOwnerId(user.getId())
+                            .and(BookSpecification.matching(filter)),
+                    pageable
+            ), null);
+        }
+
+        Slice<BookSummary> books = totalMode == TotalMode.EXACT
+                ? bookRepository.findOwnerBooks(pageable, user.getId())
+                : bookRepository.findOwnerBooksSlice(pageable, user.getId());
 
         List<BookResponse> bookResponses = books.stream()
                 .map(bookMapper::toBookResponse)
                 .toList();
 
+        Long approximateTotal = totalMode == TotalMode.APPROXIMATE
+                ? countCache.get("books:owner:" + user.getId(),
+                        () -> bookRepository.countOwnerBooks(user.getId()))
+                : null;
 
-        return new PageResponse<>(
-                bookResponses,
-                books.getNumber(),
-                books.getSize(),
-                books.getTotalElements(),
-                books.getTotalPages(),
-                books.isFirst(),
-                books.isLast()
+        return new BookListing(
+                PageResponse.of(books, bookResponses, approximateTotal),
+                toWeakETag(books.map(BookService::toBookVersion), totalMode, approximateTotal)
         );
     }
 
+    // Weak ETags of the (unfiltered) listings, computed from the (id, version) of the rows of the page
+    // and its totals: same queries as the listings, minus the owner join, the mapping and the serialization.
+    // Only worth it when a client revalidates (If-None-Match), see BookController
+    @Transactional(readOnly = true)
+    public String findAllBooksETag(
+            int page,
+            int size,
+            TotalMode totalMode,
+            Authentication connectedUser
+    ) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        Pageable pageable = PageRequest.of(
+                page,
+                size,
+                Sort.by("createdDate").descending());
+
+        Slice<BookVersion> versions = totalMode == TotalMode.EXACT
+                ? bookRepository.findDisplayableBookVersions(pageable, user.getId())
+                : bookRepository.findDisplayableBookVersionsSlice(pageable, user.getId());
+
+        Long approximateTotal = totalMode == TotalMode.APPROXIMATE
+                ? countCache.get("books:displayable:" + user.getId(),
+                        () -> bookRepository.countDisplayableBooks(user.getId()))
+                : null;
+
+        return toWeakETag(versions, totalMode, approximateTotal);
+    }
+
+    @Transactional(readOnly = true)
+    public String findAllBooksOwnerETag(
+            int page,
+            int size,
+            TotalMode totalMode,
+            Authentication connectedUser
+    ) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        Pageable pageable = PageRequest.of(
+                page,
+                size,
+                Sort.by("createdDate").descending());
+
+        Slice<BookVersion> versions = totalMode == TotalMode.EXACT
+                ? bookRepository.findOwnerBookVersions(pageable, user.getId())
+                : bookRepository.findOwnerBookVersionsSlice(pageable, user.getId());
+
+        Long approximateTotal = totalMode == TotalMode.APPROXIMATE
+                ? countCache.get("books:owner:" + user.getId(),
+                        () -> bookRepository.countOwnerBooks(user.getId()))
+                : null;
+
+        return toWeakETag(versions, totalMode, approximateTotal);
+    }
+
+    private static BookVersion toBookVersion(BookSummary book) {
+        return new BookVersion(book.id(), book.version(), null);
+    }
+
+    // same ETag whether the versions come from the listing or from the version queries
+    private static String toWeakETag(Slice<BookVersion> versions, TotalMode totalMode, Long approximateTotal) {
+        StringBuilder validator = new StringBuilder()
+                .append(totalMode).append(';')
+                .append(versions.hasNext()).append(';')
+                .append(versions instanceof Page<BookVersion> page ? page.getTotalElements() : approximateTotal);
+        for(BookVersion version : versions) {
+            validator.append(';').append(version.id()).append(':').append(version.version());
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(validator.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // filtered listings go through the Specification API, they always come with exact totals
+    private PageResponse<BookResponse> findAllMatching(
+            Specification<Book> specification,
+            Pageable pageable
+    ) {
+        Page<Book> books = bookRepository.findAll(specification, pageable);
+
+        List<BookResponse> bookResponses = books.stream()
+                .map(bookMapper::toBookResponse)
+                .toList();
+
+        return PageResponse.of(books, bookResponses, null);
+    }
+
     // Should be PageResponse<BorrowedBookResponse> ???????? YES!!!
+    @Transactional(readOnly = true)
     public PageResponse<BorrowedBookResponse> findAllBorrowedBooks(
             int page,
             int size,
+            TotalMode totalMode,
             Authentication connectedUser
     ) {
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         Pageable pageable = PageRequest.of(
                 page,
                 size,
-                Sort.by("createdDate").descending());
+                Sort.by("borrowedAt", "loanId").descending());
 
-        Page<BookTransactionHistory> allBorrowedBooks =
-                bookTransactionHistoryRepository.findAllBorrowedBooks(pageable, user.getId());
+        // served from the loan views projected from the lending events
+        Slice<LoanSummary> allBorrowedBooks = totalMode == TotalMode.EXACT
+                ? loanViewRepository.findBorrowerLoans(pageable, user.getId())
+                : loanViewRepository.findBorrowerLoansSlice(pageable, user.getId());
 
         List<BorrowedBookResponse> bookResponses = allBorrowedBooks.stream()
                 .map(bookMapper::toBorrowedBookResponse)
                 .toList();
 
-        return new PageResponse<>(
-                bookResponses,
-                allBorrowedBooks.getNumber(),
-                allBorrowedBooks.getSize(),
-                allBorrowedBooks.getTotalElements(),
-                allBorrowedBooks.getTotalPages(),
-                allBorrowedBooks.isFirst(),
-                allBorrowedBooks.isLast()
-        );
+        Long approximateTotal = totalMode == TotalMode.APPROXIMATE
+                ? countCache.get("books:borrowed:" + user.getId(),
+                        () -> loanViewRepository.countBorrowerLoans(user.getId()))
+                : null;
+
+        return PageResponse.of(allBorrowedBooks, bookResponses, approximateTotal);
     }
 
+    @Transactional(readOnly = true)
     public PageResponse<BorrowedBookResponse> findAllReturnedBooks(
             int page,
             int size,
+            TotalMode totalMode,
             Authentication connectedUser
     ) {
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         Pageable pageable = PageRequest.of(
                 page,
                 size,
-                Sort.by("createdDate").descending());
+                Sort.by("borrowedAt", "loanId").descending());
 
-        Page<BookTransactionHistory> allBorrowedBooks =
-                bookTransactionHistoryRepository.findAllReturnedBooks(pageable, user.getId());
+        Slice<LoanSummary> allBorrowedBooks = totalMode == TotalMode.EXACT
+                ? loanViewRepository.findOwnerLoans(pageable, user.getId())
+                : loanViewRepository.findOwnerLoansSlice(pageable, user.getId());
 
         List<BorrowedBookResponse> bookResponses = allBorrowedBooks.stream()
                 .map(bookMapper::toBorrowedBookResponse)
                 .toList();
 
+        Long approximateTotal = totalMode == TotalMode.APPROXIMATE
+                ? countCache.get("books:returned:" + user.getId(),
+                        () -> loanViewRepository.countOwnerLoans(user.getId()))
+                : null;
+
+        return PageResponse.of(allBorrowedBooks, bookResponses, approximateTotal);
+    }
+
+    // the inbox of an owner: the returns waiting for their approval
+    @Transactional(readOnly = true)
+    public PageResponse<BorrowedBookResponse> findPendingReturnApprovals(
+            int page,
+            int size,
+            TotalMode totalMode,
+            Authentication connectedUser
+    ) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        Pageable pageable = PageRequest.of(
+                page,
+                size,
+                Sort.by("borrowedAt", "loanId").descending());
+
+        Slice<LoanSummary> pendingApprovals = totalMode == TotalMode.EXACT
+                ? loanViewRepository.findPendingApprovals(pageable, user.getId())
+                : loanViewRepository.findPendingApprovalsSlice(pageable, user.getId());
+
+        List<BorrowedBookResponse> bookResponses = pendingApprovals.stream()
+                .map(bookMapper::toBorrowedBookResponse)
+                .toList();
+
+        Long approximateTotal = totalMode == TotalMode.APPROXIMATE
+                ? countCache.get("books:pending:" + user.getId(),
+                        () -> loanViewRepository.countPendingApprovals(user.getId()))
+                : null;
+
+        return PageResponse.of(pendingApprovals, bookResponses, approximateTotal);
+    }
+
+    // every loan of a book, for its owner
+    @Transactional(readOnly = true)
+    public PageResponse<BorrowedBookResponse> findBookHistory(
+            Integer bookId,
+            int page,
+            int size,
+            Authentication connectedUser
+    ) {
+        Book book = bookRepository.findById(bookId)
+                .orElseThrow(() ->
+                        new EntityNotFoundException("No book found with ID:: " + bookId));
+
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        if(!Objects.equals(book.getOwner().getId(), user.getId())) {
+            throw new OperationNotPermittedException("You can only see the history of your own book");
+        }
+
+        Pageable pageable = PageRequest.of(
+                page,
+                size,
+                Sort.by("borrowedAt", "loanId").descending());
+
+        Slice<LoanSummary> loans = loanViewRepository.findBookLoansSlice(pageable, bookId);
+
+        List<BorrowedBookResponse> bookResponses = loans.stream()
+                .map(bookMapper::toBorrowedBookResponse)
+                .toList();
+
+        return PageResponse.of(loans, bookResponses, null);
+    }
+
+    // served from the in-memory index, no database access
+    public PageResponse<BookResponse> searchBooks(
+            String query,
+            int page,
+            int size,
+            Authentication connectedUser
+    ) {
+        if(page < 0 || size < 1) {
+            throw new OperationNotPermittedException("Invalid page or page size");
+        }
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        BookSearchIndex.SearchResult result =
+                bookSearchIndex.search(query, user.getId(), page * size, size);
+
+        List<BookResponse> bookResponses = result.books().stream()
+                .map(bookMapper::toBookResponse)
+                .toList();
+
+        int totalPages = (int) Math.ceil((double) result.totalHits() / size);
+
         return new PageResponse<>(
                 bookResponses,
-                allBorrowedBooks.getNumber(),
-                allBorrowedBooks.getSize(),
-                allBorrowedBooks.getTotalElements(),
-                allBorrowedBooks.getTotalPages(),
-                allBorrowedBooks.isFirst(),
-                allBorrowedBooks.isLast()
+                page,
+                size,
+                (long) result.totalHits(),
+                totalPages,
+                page == 0,
+                page + 1 >= totalPages
+        );
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        if(limit < 1) {
+            throw new OperationNotPermittedException("Invalid limit");
+        }
+        return bookSuggestionTrie.suggest(prefix, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<BookResponse> findAllBooksByCursor(
+            String cursor,
+            int size,
+            Authentication connectedUser
+    ) {
+        checkCursorSize(size);
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+        PageCursor pageCursor = PageCursor.decode(cursor);
+
+        // size + 1 rows: the extra one only tells us if there is a next page
+        List<BookSummary> books = bookRepository.findDisplayableBooksAfter(
+                user.getId(),
+                pageCursor.createdDate(),
+                pageCursor.id(),
+                PageRequest.ofSize(size + 1)
+        );
+
+        return CursorPageResponse.of(
+                books,
+                size,
+                bookMapper::toBookResponse,
+                book -> new PageCursor(book.createdDate(), book.id())
+        );
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<BookResponse> findAllBooksOwnerByCursor(
+            String cursor,
+            int size,
+            Authentication connectedUser
+    ) {
+        checkCursorSize(size);
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+        PageCursor pageCursor = PageCursor.decode(cursor);
+
+        List<BookSummary> books = bookRepository.findOwnerBooksAfter(
+                user.getId(),
+                pageCursor.createdDate(),
+                pageCursor.id(),
+                PageRequest.ofSize(size + 1)
+        );
+
+        return CursorPageResponse.of(
+                books,
+                size,
+                bookMapper::toBookResponse,
+                book -> new PageCursor(book.createdDate(), book.id())
+        );
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<BorrowedBookResponse> findAllBorrowedBooksByCursor(
+            String cursor,
+            int size,
+            boolean includeArchived,
+            Authentication connectedUser
+    ) {
+        checkCursorSize(size);
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+        PageCursor pageCursor = PageCursor.decode(cursor);
+
+        if(includeArchived) {
+            List<HistoryRow> rows =
+                    bookTransactionHistoryRepository.findBorrowedBooksWithArchiveAfter(
+                            user.getId(),
+                            pageCursor.createdDate(),
+                            pageCursor.id(),
+                            size + 1
+                    );
+            return CursorPageResponse.of(
+                    rows,
+                    size,
+                    bookMapper::toBorrowedBookResponse,
+                    row -> new PageCursor(row.getCreatedDate(), row.getId())
+            );
+        }
+
+        List<BookTransactionHistory> allBorrowedBooks =
+                bookTransactionHistoryRepository.findBorrowedBooksAfter(
+                        user.getId(),
+                        pageCursor.createdDate(),
+                        pageCursor.id(),
+                        PageRequest.ofSize(size + 1)
+                );
+
+        return CursorPageResponse.of(
+                allBorrowedBooks,
+                size,
+                bookMapper::toBorrowedBookResponse,
+                PageCursor::of
+        );
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<BorrowedBookResponse> findAllReturnedBooksByCursor(
+            String cursor,
+            int size,
+            boolean includeArchived,
+            Authentication connectedUser
+    ) {
+        checkCursorSize(size);
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+        PageCursor pageCursor = PageCursor.decode(cursor);
+
+        if(includeArchived) {
+            List<HistoryRow> rows =
+                    bookTransactionHistoryRepository.findReturnedBooksWithArchiveAfter(
+                            user.getId(),
+                            pageCursor.createdDate(),
+                            pageCursor.id(),
+                            size + 1
+                    );
+            return CursorPageResponse.of(
+                    rows,
+                    size,
+                    bookMapper::toBorrowedBookResponse,
+                    row -> new PageCursor(row.getCreatedDate(), row.getId())
+            );
+        }
+
+        List<BookTransactionHistory> allReturnedBooks =
+                bookTransactionHistoryRepository.findReturnedBooksAfter(
+                        user.getId(),
+                        pageCursor.createdDate(),
+                        pageCursor.id(),
+                        PageRequest.ofSize(size + 1)
+                );
+
+        return CursorPageResponse.of(
+                allReturnedBooks,
+                size,
+                bookMapper::toBorrowedBookResponse,
+                PageCursor::of
         );
     }
 
+    private void checkCursorSize(int size) {
+        if(size < 1 || size > maxCursorSize) {
+            throw new OperationNotPermittedException("Invalid page size, between 1 and " + maxCursorSize);
+        }
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId")
     public Integer updateSharableStatus(Integer bookId, Authentication connectedUser) {
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(()->
                         new EntityNotFoundException("No book found with ID:: " + bookId));
 
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         if(!Objects.equals(book.getOwner().getId(), user.getId())) {
             throw new OperationNotPermittedException(
@@ -190,16 +663,18 @@ public class BookService {
 
         book.setShareable(!book.isShareable());
         bookRepository.save(book);
+        indexBook(book);
 
         return bookId;
     }
 
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId")
     public Integer updateArchivedStatus(Integer bookId, Authentication connectedUser) {
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(()->
                         new EntityNotFoundException("No book found with ID:: " + bookId));
 
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         if(!Objects.equals(book.getOwner().getId(), user.getId())) {
             throw new OperationNotPermittedException(
@@ -209,53 +684,125 @@ public class BookService {
 
         book.setArchived(!book.isArchived());
         bookRepository.save(book);
+        indexBook(book);
         return bookId;
     }
 
+    // The borrow/return/approve workflows read then write the history of the book: they run
+    // one at a time per book, each in its own transaction (see BookLockManager)
     public Integer borrowBook(Integer bookId, Authentication connectedUser) {
-        Book book =  bookRepository.findById(bookId)
-                .orElseThrow(() ->
-                        new EntityNotFoundException("No book found with ID:: " + bookId));
+        return bookLockManager.withLock(bookId, () -> borrow(bookId, connectedUser));
+    }
 
-        if(book.isArchived() || !book.isShareable()) {
-            throw new OperationNotPermittedException(
-                    "The requested book cannot be borrowed " +
-                            "since it is archived or not sharable"
-            );
-        }
+    public Integer returnBorrowedBook(Integer bookId, Authentication connectedUser) {
+        return bookLockManager.withLock(bookId, () -> returnBorrowed(bookId, connectedUser));
+    }
 
-        User user = (User) connectedUser.getPrincipal();
+    public Integer approveReturnBorrowedBook(Integer bookId, Authentication connectedUser) {
+        return bookLockManager.withLock(bookId, () -> approveReturn(bookId, connectedUser));
+    }
 
-        if(Objects.equals(book.getOwner().getId(), user.getId())) {
-            throw new OperationNotPermittedException(
-                    "You cannot borrow your own book"
+    // Approves a batch of returns (loan ids) with a single UPDATE, under the locks of their books.
+    // Every id gets a result: the ones that are unknown, not owned, not returned or already approved are refused
+    public List<ReturnApprovalResult> approveReturnBorrowedBooks(
+            List<Integer> loanIds,
+            Authentication connectedUser
+    ) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        List<Integer> ids = loanIds.stream().distinct().toList();
+        List<Integer> bookIds = bookTransactionHistoryRepository.findBookIdsOfOwnerLoans(ids, user.getId());
+
+        Set<Integer> approvedIds = bookLockManager.withLocks(bookIds, () -> {
+            List<ApprovedReturn> approvedReturns = bookTransactionHistoryRepository.approveReturns(ids, user.getId());
+            if(approvedReturns.isEmpty()) {
+                return Set.<Integer>of();
+            }
+
+            // the books are available again, or held for the next user of their waitlist
+            List<Integer> approvedBookIds = approvedReturns.stream()
+                    .map(ApprovedReturn::getBookId)
+                    .distinct()
+                    .toList();
+            bookRepository.clearBorrowers(approvedBookIds);
+            approvedBookIds.forEach(reservationService::offerNext);
+
+            for(ApprovedReturn approvedReturn : approvedReturns) {
+                lendingLedger.append(
+                        LendingEventType.RETURN_APPROVED,
+                        approvedReturn.getId(),
+                        approvedReturn.getBookId(),
+                        approvedReturn.getUserId()
+                );
+            }
+            lendingStats.record(
+                    LendingEventType.RETURN_APPROVED,
+                    approvedReturns.stream().map(ApprovedReturn::getBookId).toList(),
+                    approvedReturns.stream().map(ApprovedReturn::getUserId).toList()
             );
-        }
 
-        // To check if the book is borrowed by another user, even if the 'user' is the
-        // user himself
-        final boolean isAlreadyBorrowed = bookTransactionHistoryRepository
-                .isAlreadyBorrowedByUser(bookId, user.getId());
+            return approvedReturns.stream()
+                    .map(ApprovedReturn::getId)
+                    .collect(Collectors.toSet());
+        });
 
-        if (isAlreadyBorrowed) {
-            throw new OperationNotPermittedException(
-                    "The requested book is already borrowed"
-            );
+        return ids.stream()
+                .map(id -> approvedIds.contains(id)
+                        ? new ReturnApprovalResult(id, true, null)
+                        : new ReturnApprovalResult(id, false,
+                                "Not found, not your book, not returned yet or already approved"))
+                .toList();
+    }
+
+    // one conditional UPDATE on the book (the compare-and-set of its borrower) and the history insert.
+    // The book is only read to explain why the borrow was refused
+    private Integer borrow(Integer bookId, Authentication connectedUser) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        if(bookRepository.markBorrowed(bookId, user.getId()) == 0) {
+            Book book =  bookRepository.findById(bookId)
+                    .orElseThrow(() ->
+                            new EntityNotFoundException("No book found with ID:: " + bookId));
+
+            if(book.isArchived() || !book.isShareable()) {
+                throw new OperationNotPermittedException(
+                        "The requested book cannot be borrowed " +
+                                "since it is archived or not sharable"
+                );
+            }
+
+            if(Objects.equals(book.getOwner().getId(), user.getId())) {
+                throw new OperationNotPermittedException(
+                        "You cannot borrow your own book"
+                );
+            }
+
+            // held for the user since they were next in its waitlist: this borrow claims it
+            if(!Objects.equals(book.getBorrowerId(), user.getId())
+                    || !reservationService.claim(bookId, user.getId())) {
+                throw new OperationNotPermittedException(
+                        "The requested book is already borrowed, reserve it to be next in line"
+                );
+            }
         }
 
         // since borrowing book will affect the book transaction history table, we need
         // to add these to the db
         BookTransactionHistory  bookTransactionHistory = BookTransactionHistory.builder()
-                .book(book)
-                .user(user)
+                .book(bookRepository.getReferenceById(bookId))
+                .user(userRepository.getReferenceById(user.getId()))
                 .returned(false)
                 .returnApproved(false)
+                .dueDate(LocalDateTime.now().plus(loanDuration))
                 .build();
 
-        return bookTransactionHistoryRepository.save(bookTransactionHistory).getId();
+        Integer loanId = bookTransactionHistoryRepository.save(bookTransactionHistory).getId();
+        lendingLedger.append(LendingEventType.BORROWED, loanId, bookId, user.getId());
+        lendingStats.record(LendingEventType.BORROWED, bookId, user.getId());
+        return loanId;
     }
 
-    public Integer returnBorrowedBook(Integer bookId, Authentication connectedUser) {
+    private Integer returnBorrowed(Integer bookId, Authentication connectedUser) {
         Book book =  bookRepository.findById(bookId)
                 .orElseThrow(() ->
                         new EntityNotFoundException("No book found with ID:: " + bookId));
@@ -267,7 +814,7 @@ public class BookService {
             );
         }
 
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         if(Objects.equals(book.getOwner().getId(), user.getId())) {
             throw new OperationNotPermittedException(
@@ -288,10 +835,13 @@ public class BookService {
         bookTransactionHistory.setReturned(true);
 //        bookTransactionHistory.setId(book.getOwner().getId());
 
-        return bookTransactionHistoryRepository.save(bookTransactionHistory).getId();
+        Integer loanId = bookTransactionHistoryRepository.save(bookTransactionHistory).getId();
+        lendingLedger.append(LendingEventType.RETURNED, loanId, bookId, user.getId());
+        lendingStats.record(LendingEventType.RETURNED, bookId, user.getId());
+        return loanId;
     }
 
-    public Integer approveReturnBorrowedBook(Integer bookId, Authentication connectedUser) {
+    private Integer approveReturn(Integer bookId, Authentication connectedUser) {
         Book book =  bookRepository.findById(bookId)
                 .orElseThrow(() ->
                         new EntityNotFoundException("No book found with ID:: " + bookId));
@@ -303,7 +853,7 @@ public class BookService {
             );
         }
 
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         if(!Objects.equals(book.getOwner().getId(), user.getId())) {
             throw new OperationNotPermittedException(
@@ -321,9 +871,16 @@ public class BookService {
                 );
 
         bookTransactionHistory.setReturnApproved(true);
-        return bookTransactionHistoryRepository.save(bookTransactionHistory).getId();
+        // the book is available again, or held for the next user of its waitlist
+        bookRepository.clearBorrower(bookId, bookTransactionHistory.getUser().getId());
+        reservationService.offerNext(bookId);
+        Integer loanId = bookTransactionHistoryRepository.save(bookTransactionHistory).getId();
+        lendingLedger.append(LendingEventType.RETURN_APPROVED, loanId, bookId, bookTransactionHistory.getUser().getId());
+        lendingStats.record(LendingEventType.RETURN_APPROVED, bookId, bookTransactionHistory.getUser().getId());
+        return loanId;
     }
 
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#bookId")
     public void uploadBookCoverPicture(
             MultipartFile file,
             Integer bookId,
@@ -333,10 +890,21 @@ public class BookService {
                 .orElseThrow(() ->
                         new EntityNotFoundException("No book found with ID:: " + bookId));
 
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
         var bookCover = fileStorageService.savefile(file, user.getId());
         book.setBookCover(bookCover);
         bookRepository.save(book);
+        indexBook(book);
+    }
+
+    // keeps the in-memory search structures in step with the table
+    private void indexBook(Book book) {
+        indexBook(IndexedBook.of(book));
+    }
+
+    private void indexBook(IndexedBook indexedBook) {
+        bookSearchIndex.index(indexedBook);
+        bookSuggestionTrie.index(indexedBook);
     }
 }
@@ -2,10 +2,108 @@ package com.victor.bookish.book;
 
 import org.springframework.data.jpa.domain.Specification;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+// Each fragment is meant to be combined with and(...), see matching(BookFilter).
+// The indexes backing them are declared on Book and in DatabaseIndexInitializer.
 public class BookSpecification {
 
     public static Specification<Book> withOwnerId(Integer ownerId) {
         return (root, query, criteriaBuilder) -> criteriaBuilder
                 .equal(root.get("owner").get("id"), ownerId);
     }
+
+    // same rules as BookRepository.findAllDisplayableBooks
+    public static Specification<Book> displayableTo(Integer userId) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.and(
+                criteriaBuilder.isFalse(root.<Boolean>get("archived")),
+                criteriaBuilder.isTrue(root.<Boolean>get("shareable")),
+                criteriaBuilder.notEqual(root.get("owner").get("id"), userId)
+        );
+    }
+
+    // case-insensitive exact match, uses the lower(author_name) index. Locale.ROOT: in a Turkish
+    // locale 'I' would not lower to the 'i' Postgres' lower() gives
+    public static Specification<Book> withAuthorName(String authorName) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.equal(
+                criteriaBuilder.lower(root.<String>get("authorName")),
+                authorName.trim().toLowerCase(Locale.ROOT)
+        );
+    }
+
+    // LIKE 'prefix%', uses the varchar_pattern_ops index on isbn
+    public static Specification<Book> withIsbnPrefix(String isbnPrefix) {
+        String escaped = isbnPrefix.trim()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.like(root.<String>get("isbn"), escaped + "%", '\\');
+    }
+
+    public static Specification<Book> withMinRating(double minRating) {
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.greaterThanOrEqualTo(root.<Double>get("ratingAverage"), minRating);
+    }
+
+    // available = nobody holds the book, see Book.borrowerId
+    public static Specification<Book> isAvailable(boolean available) {
+        return (root, query, criteriaBuilder) -> available
+                ? criteriaBuilder.isNull(root.<Integer>get("borrowerId"))
+                : criteriaBuilder.isNotNull(root.<Integer>get("borrowerId"));
+    }
+
+    public static Specification<Book> createdFrom(LocalDate from) {
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.greaterThanOrEqualTo(root.<LocalDateTime>get("createdDate"), from.atStartOfDay());
+    }
+
+    // inclusive: the whole 'to' day is part of the range
+    public static Specification<Book> createdTo(LocalDate to) {
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.lessThan(root.<LocalDateTime>get("createdDate"), end);
+    }
+
+    public static Specification<Book> isShareable(boolean shareable) {
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.equal(root.get("shareable"), shareable);
+    }
+
+    public static Specification<Book> isArchived(boolean archived) {
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.equal(root.get("archived"), archived);
+    }
+
+    public static Specification<Book> matching(BookFilter filter) {
+        Specification<Book> specification = Specification.where(null);
+
+        if(filter.author() != null && !filter.author().isBlank()) {
+            specification = specification.and(withAuthorName(filter.author()));
+        }
+        if(filter.isbnPrefix() != null && !filter.isbnPrefix().isBlank()) {
+            specification = specification.and(withIsbnPrefix(filter.isbnPrefix()));
+        }
+        if(filter.minRating() != null) {
+            specification = specification.and(withMinRating(filter.minRating()));
+        }
+        if(filter.available() != null) {
+            specification = specification.and(isAvailable(filter.available()));
+        }
+        if(filter.createdFrom() != null) {
+            specification = specification.and(createdFrom(filter.createdFrom()));
+        }
+        if(filter.createdTo() != null) {
+            specification = specification.and(createdTo(filter.createdTo()));
+        }
+        if(filter.shareable() != null) {
+            specification = specification.and(isShareable(filter.shareable()));
+        }
+        if(filter.archived() != null) {
+            specification = specification.and(isArchived(filter.archived()));
+        }
+        return specification;
+    }
 }
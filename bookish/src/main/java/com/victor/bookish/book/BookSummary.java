@@ -0,0 +1,25 @@
+package com.victor.bookish.book;
+
+import java.time.LocalDateTime;
+
+// Read-only projection holding exactly what a BookResponse needs, fetched in one
+// query (owner joined, rate from the aggregate columns) instead of loading entities.
+// The version is not part of the response, the ETag of the listings is computed from it
+public record BookSummary(
+        Integer id,
+        String title,
+        String authorName,
+        String isbn,
+        String synopsis,
+        Integer ownerId,
+        String ownerFirstname,
+        String ownerLastname,
+        String bookCover,
+        double ratingSum,
+        int ratingCount,
+        boolean archived,
+        boolean shareable,
+        LocalDateTime createdDate,
+        long version
+) {
+}
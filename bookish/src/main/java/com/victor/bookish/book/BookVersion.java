@@ -0,0 +1,11 @@
+package com.victor.bookish.book;
+
+import java.time.LocalDateTime;
+
+// what the HTTP validators (ETag / Last-Modified) of the book endpoints are computed from
+public record BookVersion(
+        Integer id,
+        long version,
+        LocalDateTime lastModifiedDate
+) {
+}
@@ -0,0 +1,16 @@
+package com.victor.bookish.book;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record ReturnApprovalRequest(
+        // ids of the loans (BorrowedBookResponse.id), as listed by GET books/borrow/return/pending
+        @NotNull(message = "104")
+        @NotEmpty(message = "104")
+        @Size(max = 200, message = "105")
+        List<Integer> ids
+) {
+}
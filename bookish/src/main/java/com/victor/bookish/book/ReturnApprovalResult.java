@@ -0,0 +1,9 @@
+package com.victor.bookish.book;
+
+public record ReturnApprovalResult(
+        Integer id,
+        boolean approved,
+        // why the return was not approved, null when it was
+        String error
+) {
+}
@@ -0,0 +1,99 @@
+package com.victor.bookish.book;
+
+import com.victor.bookish.exception.BookLockTimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// One lock per stripe, the book id picks the stripe: a fixed amount of memory whatever the number
+// of books, and two books only contend when they share a stripe (1 chance in 'stripes').
+// The lock is held around the whole transaction, so the next action on the book sees its commit
+@Component
+@ConditionalOnProperty(name = "application.books.lock.mode", havingValue = "local", matchIfMissing = true)
+public class StripedBookLockManager implements BookLockManager {
+
+    private final ReentrantLock[] locks;
+    private final Duration timeout;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer waitTimer;
+    private final Counter contended;
+    private final Counter timeouts;
+
+    public StripedBookLockManager(
+            @Value("${application.books.lock.stripes:1024}") int stripes,
+            @Value("${application.books.lock.timeout:5s}") Duration timeout,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry
+    ) {
+        this.locks = new ReentrantLock[stripes];
+        for(int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.timeout = timeout;
+        this.transactionTemplate = transactionTemplate;
+        this.waitTimer = Timer.builder("book.lock.wait")
+                .description("Time spent waiting for a book lock")
+                .tag("mode", "local")
+                .register(meterRegistry);
+        this.contended = Counter.builder("book.lock.contended")
+                .description("Book lock acquisitions that had to wait")
+                .tag("mode", "local")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("book.lock.timeouts")
+                .description("Book lock acquisitions that timed out")
+                .tag("mode", "local")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T withLocks(Collection<Integer> bookIds, Supplier<T> action) {
+        // several books can share a stripe, each stripe is locked once
+        int[] stripes = bookIds.stream()
+                .mapToInt(bookId -> Math.floorMod(Integer.hashCode(bookId) * 0x9E3779B9, locks.length))
+                .distinct()
+                .sorted()
+                .toArray();
+
+        int locked = 0;
+        try {
+            for(int stripe : stripes) {
+                lock(locks[stripe]);
+                locked++;
+            }
+            return transactionTemplate.execute(status -> action.get());
+        } finally {
+            for(int i = 0; i < locked; i++) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    private void lock(ReentrantLock lock) {
+        long start = System.nanoTime();
+        try {
+            if(lock.tryLock()) {
+                return;
+            }
+            contended.increment();
+            if(!lock.tryLock(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new BookLockTimeoutException("The book is busy, please retry");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BookLockTimeoutException("Interrupted while waiting for a book lock");
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
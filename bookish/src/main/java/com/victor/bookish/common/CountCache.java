@@ -0,0 +1,46 @@
+package com.victor.bookish.common;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// Remembers the result of listing COUNT queries per query key for a short time,
+// used for the approximate totals of PageResponse
+@Component
+public class CountCache {
+
+    @Value("${application.pagination.count-cache.ttl:60s}")
+    private Duration ttl;
+
+    @Value("${application.pagination.count-cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final ConcurrentHashMap<String, CachedCount> counts = new ConcurrentHashMap<>();
+
+    public long get(String key, LongSupplier counter) {
+        long now = System.currentTimeMillis();
+
+        CachedCount cached = counts.get(key);
+        if(cached != null && cached.expiresAt() > now) {
+            return cached.count();
+        }
+
+        if(counts.size() >= maxEntries) {
+            counts.values().removeIf(count -> count.expiresAt() <= now);
+            if(counts.size() >= maxEntries) {
+                // still full of fresh entries, start over rather than growing without bound
+                counts.clear();
+            }
+        }
+
+        long count = counter.getAsLong();
+        counts.put(key, new CachedCount(count, now + ttl.toMillis()));
+        return count;
+    }
+
+    private record CachedCount(long count, long expiresAt) {
+    }
+}
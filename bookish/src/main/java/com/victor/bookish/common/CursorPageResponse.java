@@ -0,0 +1,44 @@
+package com.victor.bookish.common;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Keyset (seek) variant of PageResponse: no page number and no total, just the
+// cursor to pass back to get the next page
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResponse<T> {
+
+    private List<T> content;
+    private int size;
+    private String nextCursor; // null on the last page
+    private boolean last;
+
+    // rows are expected to be fetched with a limit of size + 1, the extra row only
+    // tells us whether there is a next page
+    public static <E, T> CursorPageResponse<T> of(
+            List<E> rows,
+            int size,
+            Function<E, T> mapper,
+            Function<E, PageCursor> cursorMapper
+    ) {
+        boolean last = rows.size() <= size;
+        List<E> pageRows = last ? rows : rows.subList(0, size);
+
+        String nextCursor = last || pageRows.isEmpty()
+                ? null
+                : cursorMapper.apply(pageRows.get(pageRows.size() - 1)).encode();
+
+        return new CursorPageResponse<>(
+                pageRows.stream().map(mapper).toList(),
+                size,
+                nextCursor,
+                last
+        );
+    }
+}
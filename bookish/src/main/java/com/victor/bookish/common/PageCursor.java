@@ -0,0 +1,50 @@
+package com.victor.bookish.common;
+
+import com.victor.bookish.exception.OperationNotPermittedException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Position of the last row of a page in the (createdDate DESC, id DESC) order.
+// Clients only ever see the opaque encoded form.
+public record PageCursor(LocalDateTime createdDate, Integer id) {
+
+    // sorts after every real row, so the first page can use the same seek query
+    private static final PageCursor FIRST = new PageCursor(
+            LocalDateTime.of(9999, 12, 31, 23, 59, 59),
+            Integer.MAX_VALUE
+    );
+
+    public static PageCursor first() {
+        return FIRST;
+    }
+
+    public static PageCursor of(BaseEntity entity) {
+        return new PageCursor(entity.getCreatedDate(), entity.getId());
+    }
+
+    public static PageCursor decode(String cursor) {
+        if(cursor == null || cursor.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('_');
+            return new PageCursor(
+                    LocalDateTime.parse(decoded.substring(0, separator)),
+                    Integer.valueOf(decoded.substring(separator + 1))
+            );
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new OperationNotPermittedException("Invalid page cursor");
+        }
+    }
+
+    public String encode() {
+        String raw = createdDate + "_" + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,6 +1,8 @@
 package com.victor.bookish.common;
 
 import lombok.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
 
@@ -14,8 +16,37 @@ public class PageResponse<T> {
     private List<T> content; // by converting Pageable to a list
     private int number;
     private int size;
-    private long totalElements;
-    private int totalPages;
+    private Long totalElements; // null when the totals were not requested (see TotalMode)
+    private Integer totalPages;
     private boolean first;
     private boolean last;
+
+    // exact totals when given a Page, otherwise the (possibly null) approximate total
+    public static <T> PageResponse<T> of(Slice<?> slice, List<T> content, Long approximateTotal) {
+        if(slice instanceof Page<?> page) {
+            return new PageResponse<>(
+                    content,
+                    page.getNumber(),
+                    page.getSize(),
+                    page.getTotalElements(),
+                    page.getTotalPages(),
+                    page.isFirst(),
+                    page.isLast()
+            );
+        }
+
+        Integer totalPages = approximateTotal == null
+                ? null
+                : (int) Math.ceil((double) approximateTotal / slice.getSize());
+
+        return new PageResponse<>(
+                content,
+                slice.getNumber(),
+                slice.getSize(),
+                approximateTotal,
+                totalPages,
+                slice.isFirst(),
+                slice.isLast()
+        );
+    }
 }
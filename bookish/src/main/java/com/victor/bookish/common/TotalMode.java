@@ -0,0 +1,16 @@
+package com.victor.bookish.common;
+
+// How the totals of a PageResponse are computed
+public enum TotalMode {
+
+    EXACT,       // Page: a COUNT query on every call
+    NONE,        // Slice: size + 1 rows are fetched to know if it is the last page, no COUNT
+    APPROXIMATE; // Slice + a COUNT cached per query for a short while (see CountCache)
+
+    public static TotalMode of(boolean withTotal, boolean approximateTotal) {
+        if(!withTotal) {
+            return NONE;
+        }
+        return approximateTotal ? APPROXIMATE : EXACT;
+    }
+}
@@ -1,5 +1,7 @@
 package com.victor.bookish.config;
 
+import com.victor.bookish.security.BoundedPasswordEncoder;
+import com.victor.bookish.security.PasswordHashingExecutor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -24,6 +26,7 @@ import java.util.Collections;
 public class BeansConfig {
 
     private final UserDetailsService userDetailsService;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
     @Bean
     public AuthenticationProvider authenticationProvider() {
@@ -49,7 +52,8 @@ public class BeansConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        // off the request threads, see PasswordHashingExecutor
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), passwordHashingExecutor);
     }
 
     @Bean
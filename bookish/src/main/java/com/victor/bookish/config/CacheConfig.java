@@ -0,0 +1,57 @@
+package com.victor.bookish.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.victor.bookish.book.BookResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String BOOKS_CACHE = "books";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${application.cache.books.max-weight:16777216}") long maxWeight,
+            @Value("${application.cache.books.ttl:10m}") Duration ttl
+    ) {
+        // Caffeine evicts with W-TinyLFU, bounded by the estimated size of the entries (in bytes).
+        // recordStats feeds the cache.gets/cache.evictions metrics of the actuator
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(BOOKS_CACHE);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Object key, Object value) -> weigh(value))
+                .expireAfterWrite(ttl)
+                .recordStats());
+        cacheManager.setAllowNullValues(false);
+
+        // evictions made inside a transaction only happen once it commits,
+        // otherwise a concurrent read could put the old row back in the cache
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    private static int weigh(Object value) {
+        if(value instanceof BookResponse book) {
+            return 64
+                    + sizeOf(book.getTitle())
+                    + sizeOf(book.getAuthorName())
+                    + sizeOf(book.getIsbn())
+                    + sizeOf(book.getSynopsis())
+                    + sizeOf(book.getOwner())
+                    + sizeOf(book.getCoverUrl());
+        }
+        return 64;
+    }
+
+    private static int sizeOf(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+}
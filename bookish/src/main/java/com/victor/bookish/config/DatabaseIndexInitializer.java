@@ -0,0 +1,68 @@
+package com.victor.bookish.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Indexes that @Index cannot express (expressions, operator classes, partial indexes).
+// Hibernate creates the tables (ddl-auto), these are created once the tables exist.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class DatabaseIndexInitializer implements CommandLineRunner {
+
+    private static final List<String> INDEXES = List.of(
+            // BookSpecification.withAuthorName
+            """
+            CREATE INDEX IF NOT EXISTS idx_book_author_name_lower
+            ON book (lower(author_name))
+            """,
+            // BookSpecification.withIsbnPrefix (LIKE 'prefix%' whatever the collation)
+            """
+            CREATE INDEX IF NOT EXISTS idx_book_isbn_pattern
+            ON book (isbn varchar_pattern_ops)
+            """,
+            // BookSpecification.displayableTo, ordered like the listings
+            """
+            CREATE INDEX IF NOT EXISTS idx_book_displayable_created_date
+            ON book (created_date DESC, id DESC)
+            WHERE archived = false AND shareable = true
+            """,
+            // OverdueLoanScanner, in its keyset order
+            """
+            CREATE INDEX IF NOT EXISTS idx_history_open_due_date
+            ON book_transaction_history (due_date, id)
+            WHERE returned = false
+            """,
+            // BookTransactionHistoryArchiver candidates
+            """
+            CREATE INDEX IF NOT EXISTS idx_history_archivable
+            ON book_transaction_history (created_date)
+            WHERE return_approved = true
+            """,
+            // OutboxEmailRepository.claimDue
+            """
+            CREATE INDEX IF NOT EXISTS idx_email_outbox_pending
+            ON email_outbox (next_attempt_at, id)
+            WHERE status = 'PENDING'
+            """
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(String... args) {
+        for (String index : INDEXES) {
+            try {
+                jdbcTemplate.execute(index);
+            } catch (DataAccessException e) {
+                log.warn("Could not create index: {}", index, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.victor.bookish.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// JDBC batching of the inserts/updates flushed together (bulk book import, see BookImportService).
+// The ids come from the pooled sequences Hibernate generates per entity (increment 50),
+// so a batch does not need a sequence round trip per row
+@Configuration
+public class HibernateBatchConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateBatchCustomizer(
+            @Value("${application.jpa.batch-size:50}") int batchSize
+    ) {
+        return properties -> {
+            properties.put("hibernate.jdbc.batch_size", batchSize);
+            properties.put("hibernate.order_inserts", true);
+            properties.put("hibernate.order_updates", true);
+        };
+    }
+}
@@ -0,0 +1,181 @@
+package com.victor.bookish.email;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Drains the email outbox in batches. A batch is claimed with FOR UPDATE SKIP LOCKED (every instance
+// can dispatch, each gets its own rows) and sent through one SMTP connection, opened once for all
+// the messages of the batch (JavaMailSender.send(MimeMessage...)). A failed email is retried with
+// an exponential backoff, and marked DEAD after max-attempts
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class EmailOutboxDispatcher {
+
+    private final OutboxEmailRepository outboxEmailRepository;
+    private final JavaMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${application.mailing.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${application.mailing.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    // doubled after each failed attempt, up to max-backoff
+    @Value("${application.mailing.outbox.backoff:30s}")
+    private Duration backoff;
+
+    @Value("${application.mailing.outbox.max-backoff:1h}")
+    private Duration maxBackoff;
+
+    private Counter sent;
+    private Counter retried;
+    private Counter dead;
+
+    @PostConstruct
+    void init() {
+        sent = outcome("sent");
+        retried = outcome("retried");
+        dead = outcome("dead");
+    }
+
+    @Scheduled(
+            fixedDelayString = "${application.mailing.outbox.poll-ms:2000}",
+            initialDelayString = "${application.mailing.outbox.poll-ms:2000}"
+    )
+    public void dispatch() {
+        drain();
+    }
+
+    // sends batches until none is full, returns the number of emails sent
+    public int drain() {
+        long start = System.nanoTime();
+        int sentCount = 0;
+        BatchResult batch;
+        do {
+            batch = transactionTemplate.execute(status -> dispatchBatch());
+            sentCount += batch.sent();
+        } while (batch.claimed() == batchSize);
+
+        if(sentCount > 0) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            log.info("{} email(s) sent in {} ms ({} mails/s)",
+                    sentCount, Math.round(seconds * 1000), Math.round(sentCount / seconds));
+        }
+        return sentCount;
+    }
+
+    private BatchResult dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEmail> emails = outboxEmailRepository.claimDue(now, batchSize);
+        if(emails.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+
+        Map<MimeMessage, OutboxEmail> messages = new LinkedHashMap<>();
+        for (OutboxEmail email : emails) {
+            try {
+                messages.put(toMimeMessage(email), email);
+            } catch (MessagingException e) {
+                failed(email, e, now);
+            }
+        }
+
+        Map<Object, Exception> failures = new HashMap<>();
+        try {
+            mailSender.send(messages.keySet().toArray(MimeMessage[]::new));
+        } catch (MailSendException e) {
+            // the messages refused one by one, or all of them when the connection failed
+            failures.putAll(e.getFailedMessages());
+            if(failures.isEmpty()) {
+                messages.keySet().forEach(message -> failures.put(message, e));
+            }
+        } catch (MailException e) {
+            // authentication...: nothing was sent
+            messages.keySet().forEach(message -> failures.put(message, e));
+        }
+
+        int sentCount = 0;
+        for (Map.Entry<MimeMessage, OutboxEmail> entry : messages.entrySet()) {
+            Exception failure = failures.get(entry.getKey());
+            if(failure != null) {
+                failed(entry.getValue(), failure, now);
+            } else {
+                entry.getValue().setStatus(OutboxEmailStatus.SENT);
+                entry.getValue().setSentAt(now);
+                entry.getValue().setAttempts(entry.getValue().getAttempts() + 1);
+                sentCount++;
+            }
+        }
+        sent.increment(sentCount);
+        return new BatchResult(emails.size(), sentCount);
+    }
+
+    private MimeMessage toMimeMessage(OutboxEmail email) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(
+                mimeMessage,
+                MimeMessageHelper.MULTIPART_MODE_MIXED,
+                StandardCharsets.UTF_8.name()
+        );
+
+        helper.setFrom(EmailService.FROM);
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody(), true);
+
+        return mimeMessage;
+    }
+
+    private void failed(OutboxEmail email, Exception e, LocalDateTime now) {
+        int attempts = email.getAttempts() + 1;
+        email.setAttempts(attempts);
+        email.setLastError(abbreviate(String.valueOf(e.getMessage())));
+
+        if(attempts >= maxAttempts) {
+            email.setStatus(OutboxEmailStatus.DEAD);
+            dead.increment();
+            log.warn("Email {} to {} given up after {} attempt(s)", email.getId(), email.getRecipient(), attempts, e);
+            return;
+        }
+
+        Duration delay = backoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        email.setNextAttemptAt(now.plus(delay.compareTo(maxBackoff) < 0 ? delay : maxBackoff));
+        retried.increment();
+    }
+
+    private static String abbreviate(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    private Counter outcome(String outcome) {
+        return Counter.builder("email.outbox.dispatched")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record BatchResult(int claimed, int sent) {}
+}
@@ -1,27 +1,27 @@
 package com.victor.bookish.email;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.victor.bookish.history.OverdueLoan;
 import lombok.RequiredArgsConstructor;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.thymeleaf.context.Context;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 
-import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+// Queues the emails in the outbox, in the transaction of the caller: an email is sent
+// (by EmailOutboxDispatcher) only if what it is about committed, and is not lost on a crash
 @Service
 @RequiredArgsConstructor
 public class EmailService {
 
-    private final JavaMailSender mailSender;
+    static final String FROM = "victoradepoju30@gmail.com";
+
+    private final OutboxEmailRepository outboxEmailRepository;
     private final SpringTemplateEngine templateEngine;
 
-    @Async
     public void sendEmail(
             String to,
             String username,
@@ -29,39 +29,54 @@ public class EmailService {
             String confirmationUrl,
             String activationCode,
             String subject
-    ) throws MessagingException {
+    ) {
 
         String templateName;
         if(emailTemplate == null) {
             templateName = "confirm-email";
         } else {
-            templateName = emailTemplate.name();
+            templateName = emailTemplate.getName();
         }
 
-        MimeMessage mimeMessage = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(
-                mimeMessage,
-                MimeMessageHelper.MULTIPART_MODE_MIXED,
-                StandardCharsets.UTF_8.name()
-        );
-
         // in order to pass parameters into html template
         Map<String, Object> properties = new HashMap<>();
         properties.put("username", username);
         properties.put("confirmationUrl", confirmationUrl);
         properties.put("activation_code", activationCode);
 
-        Context context = new Context();
-        context.setVariables(properties);
+        enqueue(to, subject, templateName, properties);
+    }
 
-        helper.setFrom("victoradepoju30@gmail.com");
-        helper.setTo(to);
-        helper.setSubject(subject);
+    // one email per borrower per run of OverdueLoanScanner, all their overdue books in it
+    public void sendOverdueReminder(
+            String to,
+            String username,
+            List<OverdueLoan> loans
+    ) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("username", username);
+        properties.put("loans", loans);
 
-        String template = templateEngine.process(templateName, context);
+        enqueue(to, "Overdue books", EmailTemplateName.OVERDUE_LOANS.getName(), properties);
+    }
 
-        helper.setText(template, true);
+    private void enqueue(
+            String to,
+            String subject,
+            String templateName,
+            Map<String, Object> properties
+    ) {
+        Context context = new Context();
+        context.setVariables(properties);
 
-        mailSender.send(mimeMessage);
+        LocalDateTime now = LocalDateTime.now();
+        outboxEmailRepository.save(OutboxEmail.builder()
+                .recipient(to)
+                .subject(subject)
+                .body(templateEngine.process(templateName, context))
+                .status(OutboxEmailStatus.PENDING)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
     }
 }
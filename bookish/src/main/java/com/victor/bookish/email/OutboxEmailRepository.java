@@ -0,0 +1,25 @@
+package com.victor.bookish.email;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxEmailRepository extends JpaRepository<OutboxEmail, Integer> {
+
+    // The next emails due, locked until the transaction ends. The rows locked by another
+    // instance are skipped, see idx_email_outbox_pending
+    @Query(nativeQuery = true, value = """
+            SELECT *
+            FROM email_outbox
+            WHERE status = 'PENDING'
+            AND next_attempt_at <= :now
+            ORDER BY next_attempt_at, id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """)
+    List<OutboxEmail> claimDue(LocalDateTime now, int limit);
+
+    long countByStatus(OutboxEmailStatus status);
+}
@@ -0,0 +1,8 @@
+package com.victor.bookish.email;
+
+public enum OutboxEmailStatus {
+    PENDING,
+    SENT,
+    // failed max-attempts times, left for a human to look at
+    DEAD
+}
@@ -0,0 +1,7 @@
+package com.victor.bookish.exception;
+
+public class BookLockTimeoutException extends RuntimeException {
+    public BookLockTimeoutException(String msg) {
+        super(msg);
+    }
+}
@@ -1,6 +1,7 @@
 package com.victor.bookish.feedback;
 
 import com.victor.bookish.common.PageResponse;
+import com.victor.bookish.common.TotalMode;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -31,12 +32,15 @@ public class FeedbackController {
             @PathVariable("book-id") Integer bookId,
             @RequestParam(name = "page", defaultValue = "0", required = false) int page,
             @RequestParam(name = "size", defaultValue = "10", required = false) int size,
+            @RequestParam(name = "withTotal", defaultValue = "true", required = false) boolean withTotal,
+            @RequestParam(name = "approximateTotal", defaultValue = "false", required = false) boolean approximateTotal,
             Authentication connectedUser
     ) {
         return ResponseEntity.ok(feedbackService.findAllFeedbacksByBook(
                 bookId,
                 page,
                 size,
+                TotalMode.of(withTotal, approximateTotal),
                 connectedUser
         ));
     }
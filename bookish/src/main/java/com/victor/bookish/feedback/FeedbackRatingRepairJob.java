@@ -0,0 +1,36 @@
+package com.victor.bookish.feedback;
+
+import com.victor.bookish.book.BookRepository;
+import com.victor.bookish.config.CacheConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+// Safety net for the rating aggregate stored on Book: recomputes it from the
+// Feedback table (e.g. after feedbacks were edited or deleted directly in the db).
+// Also run once at startup: it is the backfill of the books created before the aggregate existed,
+// they would show a rate of 0 (and be dropped by the minRating filter) until the first night
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FeedbackRatingRepairJob {
+
+    private final BookRepository bookRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${application.feedback.rating-repair-cron:0 0 3 * * *}")
+    // the repaired rows are not known here, drop every cached book
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, allEntries = true)
+    @Transactional
+    public void repairRatings() {
+        int repaired = bookRepository.recomputeRatings();
+        if(repaired > 0) {
+            log.warn("Rating aggregate was out of sync for {} book(s), repaired", repaired);
+        }
+    }
+}
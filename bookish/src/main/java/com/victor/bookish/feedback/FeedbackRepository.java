@@ -2,6 +2,7 @@ package com.victor.bookish.feedback;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
@@ -13,4 +14,18 @@ public interface FeedbackRepository extends JpaRepository<Feedback, Integer> {
             WHERE feedback.book.id = :bookId
             """)
     Page<Feedback> findAllByBookId(Integer bookId, Pageable pageable);
+
+    @Query("""
+            SELECT feedback
+            FROM Feedback feedback
+            WHERE feedback.book.id = :bookId
+            """)
+    Slice<Feedback> findSliceByBookId(Integer bookId, Pageable pageable);
+
+    @Query("""
+            SELECT COUNT(feedback)
+            FROM Feedback feedback
+            WHERE feedback.book.id = :bookId
+            """)
+    long countByBookId(Integer bookId);
 }
@@ -2,16 +2,24 @@ package com.victor.bookish.feedback;
 
 import com.victor.bookish.book.Book;
 import com.victor.bookish.book.BookRepository;
+import com.victor.bookish.common.CountCache;
 import com.victor.bookish.common.PageResponse;
+import com.victor.bookish.common.TotalMode;
+import com.victor.bookish.config.CacheConfig;
 import com.victor.bookish.exception.OperationNotPermittedException;
-import com.victor.bookish.user.User;
+import com.victor.bookish.search.BookSearchIndex;
+import com.victor.bookish.user.UserPrincipal;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Objects;
@@ -23,7 +31,11 @@ public class FeedbackService {
     private final BookRepository bookRepository;
     private final FeedbackMapper feedbackMapper;
     private final FeedbackRepository feedbackRepository;
+    private final CountCache countCache;
+    private final BookSearchIndex bookSearchIndex;
 
+    @CacheEvict(cacheNames = CacheConfig.BOOKS_CACHE, key = "#feedbackRequest.bookId()")
+    @Transactional
     public Integer save(FeedbackRequest feedbackRequest, Authentication connectedUser) {
 
         Book book = bookRepository.findById(feedbackRequest.bookId())
@@ -37,7 +49,7 @@ public class FeedbackService {
             );
         }
 
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
         if(Objects.equals(book.getOwner().getId(), user.getId())) {
             throw new OperationNotPermittedException(
                     "You cannot give a feedback to your own book"
@@ -45,34 +57,54 @@ public class FeedbackService {
         }
 
         Feedback feedback = feedbackMapper.toFeedback(feedbackRequest);
+        Integer feedbackId = feedbackRepository.save(feedback).getId();
 
-        return feedbackRepository.save(feedback).getId();
+        // same transaction as the feedback insert, so the aggregate never drifts on rollback;
+        // the in-memory index only follows once it is committed
+        if(feedback.getNote() != null) {
+            Integer bookId = book.getId();
+            double note = feedback.getNote();
+            bookRepository.addRating(bookId, note);
+            afterCommit(() -> bookSearchIndex.addRating(bookId, note));
+        }
+
+        return feedbackId;
     }
 
+    @Transactional(readOnly = true)
     public PageResponse<FeedbackResponse> findAllFeedbacksByBook(
             Integer bookId,
             int page,
             int size,
+            TotalMode totalMode,
             Authentication connectedUser
     ) {
         Pageable pageable = PageRequest.of(page, size);
 
-        User user = (User) connectedUser.getPrincipal();
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
 
-        Page<Feedback> feedbacks = feedbackRepository.findAllByBookId(bookId, pageable);
+        Slice<Feedback> feedbacks = totalMode == TotalMode.EXACT
+                ? feedbackRepository.findAllByBookId(bookId, pageable)
+                : feedbackRepository.findSliceByBookId(bookId, pageable);
 
         List<FeedbackResponse> feedbackResponses = feedbacks.stream()
                 .map(feedback -> feedbackMapper.toFeedbackResponse(feedback, user.getId()))
                 .toList();
 
-        return new PageResponse<>(
-                feedbackResponses,
-                feedbacks.getNumber(),
-                feedbacks.getSize(),
-                feedbacks.getTotalElements(),
-                feedbacks.getTotalPages(),
-                feedbacks.isFirst(),
-                feedbacks.isLast()
-        );
+        Long approximateTotal = totalMode == TotalMode.APPROXIMATE
+                ? countCache.get("feedbacks:book:" + bookId,
+                        () -> feedbackRepository.countByBookId(bookId))
+                : null;
+
+        return PageResponse.of(feedbacks, feedbackResponses, approximateTotal);
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
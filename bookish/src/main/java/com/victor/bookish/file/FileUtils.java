@@ -2,6 +2,7 @@ package com.victor.bookish.file;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.FileSystemResource;
 
 import java.io.File;
 import java.io.IOException;
@@ -22,4 +23,17 @@ public class FileUtils {
         }
         return null;
     }
+
+    // the resource is opened lazily (NIO channel), so nothing is read into memory here
+    public static FileSystemResource getFileAsResource(String fileUrl) {
+        if(StringUtils.isBlank(fileUrl)) {
+            return null;
+        }
+        FileSystemResource resource = new FileSystemResource(fileUrl);
+        if(!resource.isReadable()) {
+            log.warn("No file found in the path {}", fileUrl);
+            return null;
+        }
+        return resource;
+    }
 }
@@ -11,7 +11,10 @@ public enum BusinessErrorCodes {
     NEW_PASSWORD_DOES_NOT_MATCH(301, HttpStatus.BAD_REQUEST, "New password does not match"),
     ACCOUNT_LOCKED(302, HttpStatus.FORBIDDEN, "User account is locked"),
     ACCOUNT_DISABLED(303, HttpStatus.FORBIDDEN, "User account is disabled"),
-    BAD_CREDENTIALS(304, HttpStatus.FORBIDDEN, "Login and/or password is incorrect")
+    BAD_CREDENTIALS(304, HttpStatus.FORBIDDEN, "Login and/or password is incorrect"),
+    BOOK_BUSY(305, HttpStatus.CONFLICT, "The book is being borrowed or returned by someone else, please retry"),
+    LOGIN_BUSY(306, HttpStatus.SERVICE_UNAVAILABLE, "Too many logins at the moment, please retry"),
+    TOO_MANY_ATTEMPTS(307, HttpStatus.TOO_MANY_REQUESTS, "Too many attempts, please retry later")
     ;
 
     private final int code;
@@ -1,7 +1,11 @@
 package com.victor.bookish.handler;
 
+import com.victor.bookish.exception.BookLockTimeoutException;
 import com.victor.bookish.exception.OperationNotPermittedException;
+import com.victor.bookish.exception.PasswordHashingBusyException;
+import com.victor.bookish.exception.TooManyAttemptsException;
 import jakarta.mail.MessagingException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -11,6 +15,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.time.Duration;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -78,6 +83,50 @@ public class GlobalExceptionHandler {
                         .build());
     }
 
+    // another borrow/return/approve of the same book held the lock for too long, the client can retry
+    @ExceptionHandler(BookLockTimeoutException.class)
+    public ResponseEntity<ExceptionResponse> handleException(
+            BookLockTimeoutException exp
+    ) {
+
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ExceptionResponse.builder()
+                        .businessErrorCode(BusinessErrorCodes.BOOK_BUSY.getCode())
+                        .businessErrorDescription(BusinessErrorCodes.BOOK_BUSY.getDescription())
+                        .error(exp.getMessage())
+                        .build());
+    }
+
+    // the password hashing pool is saturated
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<ExceptionResponse> handleException(
+            PasswordHashingBusyException exp
+    ) {
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(exp.getRetryAfter()))
+                .body(ExceptionResponse.builder()
+                        .businessErrorCode(BusinessErrorCodes.LOGIN_BUSY.getCode())
+                        .businessErrorDescription(BusinessErrorCodes.LOGIN_BUSY.getDescription())
+                        .error(exp.getMessage())
+                        .build());
+    }
+
+    // login rate limit of the account or of the address
+    @ExceptionHandler(TooManyAttemptsException.class)
+    public ResponseEntity<ExceptionResponse> handleException(
+            TooManyAttemptsException exp
+    ) {
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(exp.getRetryAfter()))
+                .body(ExceptionResponse.builder()
+                        .businessErrorCode(BusinessErrorCodes.TOO_MANY_ATTEMPTS.getCode())
+                        .businessErrorDescription(BusinessErrorCodes.TOO_MANY_ATTEMPTS.getDescription())
+                        .error(exp.getMessage())
+                        .build());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ExceptionResponse> handleException(
             MethodArgumentNotValidException exp
@@ -112,4 +161,9 @@ public class GlobalExceptionHandler {
                         .error(exp.getMessage())
                         .build());
     }
+
+    // whole seconds, rounded up
+    private static String retryAfterSeconds(Duration retryAfter) {
+        return String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+    }
 }
@@ -0,0 +1,11 @@
+package com.victor.bookish.history;
+
+// a loan whose return was approved by BookTransactionHistoryRepository.approveReturns
+public interface ApprovedReturn {
+
+    Integer getId();
+
+    Integer getBookId();
+
+    Integer getUserId();
+}
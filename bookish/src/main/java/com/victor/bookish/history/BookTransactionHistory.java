@@ -4,20 +4,30 @@ import com.victor.bookish.book.Book;
 import com.victor.bookish.common.BaseEntity;
 import com.victor.bookish.user.User;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.SuperBuilder;
 
+import java.time.LocalDateTime;
+
 @Getter
 @Setter
 @SuperBuilder
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(indexes = {
+        // keyset pagination of the borrowed books listing
+        @Index(name = "idx_history_user_created_date_id", columnList = "user_id, createdDate, id"),
+        // and of the returned books listing, book by book of the owner
+        @Index(name = "idx_history_book_created_date_id", columnList = "book_id, createdDate, id")
+})
 public class BookTransactionHistory extends BaseEntity {
 
     // user relationship
@@ -33,4 +43,10 @@ public class BookTransactionHistory extends BaseEntity {
     private boolean returned;
 
     private boolean returnApproved; // by owner
+
+    // the borrower is reminded by OverdueLoanScanner once it is passed and the book not returned
+    private LocalDateTime dueDate;
+
+    // set with the reminder queued, so a later scan the same day skips the loan
+    private LocalDateTime lastRemindedAt;
 }
@@ -0,0 +1,156 @@
+package com.victor.bookish.history;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+// Moves the approved loans older than application.history.archive.after-days from
+// book_transaction_history to book_transaction_history_archive, so the hot table the lending
+// workflow reads stays small. The archive is range partitioned by month of created_date.
+// Each batch is a single DELETE ... RETURNING / INSERT statement committed on its own, and rows
+// locked by a running borrow/return are skipped: no long transaction, no lock pile up
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class BookTransactionHistoryArchiver implements CommandLineRunner {
+
+    static final String ARCHIVE_TABLE = "book_transaction_history_archive";
+
+    private static final String COLUMNS = """
+            id, created_date, last_modified_date, created_by, last_modified_by,
+            user_id, book_id, returned, return_approved
+            """;
+
+    private static final List<String> SCHEMA = List.of(
+            """
+            CREATE TABLE IF NOT EXISTS book_transaction_history_archive (
+                id integer NOT NULL,
+                created_date timestamp(6) NOT NULL,
+                last_modified_date timestamp(6),
+                created_by integer NOT NULL,
+                last_modified_by integer,
+                user_id integer,
+                book_id integer,
+                returned boolean NOT NULL,
+                return_approved boolean NOT NULL,
+                PRIMARY KEY (id, created_date)
+            ) PARTITION BY RANGE (created_date)
+            """,
+            // same keyset listings as the hot table
+            """
+            CREATE INDEX IF NOT EXISTS idx_history_archive_user_created_date_id
+            ON book_transaction_history_archive (user_id, created_date, id)
+            """,
+            // the owner listing reads each of the owner's books in keyset order
+            """
+            CREATE INDEX IF NOT EXISTS idx_history_archive_book_created_date_id
+            ON book_transaction_history_archive (book_id, created_date, id)
+            """
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${application.history.archive.after-days:90}")
+    private int afterDays;
+
+    @Value("${application.history.archive.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${application.history.archive.pause:100ms}")
+    private Duration pause;
+
+    @Override
+    public void run(String... args) {
+        for (String statement : SCHEMA) {
+            try {
+                jdbcTemplate.execute(statement);
+            } catch (DataAccessException e) {
+                log.warn("Could not create the history archive: {}", statement, e);
+            }
+        }
+    }
+
+    @Scheduled(cron = "${application.history.archive.cron:0 30 3 * * *}")
+    public void archive() {
+        LocalDateTime cutoff = LocalDate.now().minusDays(afterDays).atStartOfDay();
+        Timestamp oldest = jdbcTemplate.queryForObject("""
+                SELECT min(created_date)
+                FROM book_transaction_history
+                WHERE return_approved = true
+                AND created_date < ?
+                """, Timestamp.class, Timestamp.valueOf(cutoff));
+        if(oldest == null) {
+            return;
+        }
+        // there is no default partition: a row without one would fail the whole batch
+        createPartitions(YearMonth.from(oldest.toLocalDateTime()), YearMonth.from(cutoff));
+
+        long start = System.currentTimeMillis();
+        int archived = 0;
+        int moved;
+        do {
+            moved = moveBatch(cutoff);
+            archived += moved;
+            if(moved == batchSize) {
+                pause();
+            }
+        } while (moved == batchSize);
+
+        log.info("{} approved loan(s) older than {} archived in {} ms",
+                archived, cutoff, System.currentTimeMillis() - start);
+    }
+
+    private int moveBatch(LocalDateTime cutoff) {
+        return jdbcTemplate.update("""
+                WITH moved AS (
+                    DELETE FROM book_transaction_history
+                    WHERE id IN (
+                        SELECT id
+                        FROM book_transaction_history
+                        WHERE return_approved = true
+                        AND created_date < ?
+                        ORDER BY created_date
+                        LIMIT ?
+                        FOR UPDATE SKIP LOCKED
+                    )
+                    RETURNING %1$s
+                )
+                INSERT INTO book_transaction_history_archive (%1$s)
+                SELECT %1$s FROM moved
+                """.formatted(COLUMNS), Timestamp.valueOf(cutoff), batchSize);
+    }
+
+    private void createPartitions(YearMonth from, YearMonth to) {
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            jdbcTemplate.execute("""
+                    CREATE TABLE IF NOT EXISTS %s_y%dm%02d
+                    PARTITION OF %s
+                    FOR VALUES FROM ('%s') TO ('%s')
+                    """.formatted(
+                    ARCHIVE_TABLE, month.getYear(), month.getMonthValue(),
+                    ARCHIVE_TABLE, month.atDay(1), month.plusMonths(1).atDay(1)
+            ));
+        }
+    }
+
+    // lets the autovacuum and the other writers breathe between two batches
+    private void pause() {
+        try {
+            Thread.sleep(pause.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.victor.bookish.history;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface BookTransactionHistoryRepository extends
         JpaRepository<BookTransactionHistory, Integer>
@@ -24,16 +32,181 @@ public interface BookTransactionHistoryRepository extends
             """)
     Page<BookTransactionHistory> findAllReturnedBooks(Pageable pageable, Integer userId);
 
+    // keyset variants of the two listings above, see BookRepository
     @Query("""
-            SELECT
-            (COUNT(*) > 0) AS isBorrowed
-            FROM BookTransactionHistory bookTransactionHistory
-            WHERE bookTransactionHistory.user.id = :userId
-            AND bookTransactionHistory.book.id = :bookId
-            AND bookTransactionHistory.returnApproved = false
+            SELECT history
+            FROM BookTransactionHistory history
+            WHERE history.user.id = :userId
+            AND (history.createdDate, history.id) < (:createdDate, :id)
+            ORDER BY history.createdDate DESC, history.id DESC
+            """)
+    List<BookTransactionHistory> findBorrowedBooksAfter(
+            Integer userId,
+            LocalDateTime createdDate,
+            Integer id,
+            Pageable pageable
+    );
+
+    @Query("""
+            SELECT history
+            FROM BookTransactionHistory history
+            WHERE history.book.owner.id = :userId
+            AND (history.createdDate, history.id) < (:createdDate, :id)
+            ORDER BY history.createdDate DESC, history.id DESC
             """)
-    // last AND is because book is available only when owner approves it's return
-    boolean isAlreadyBorrowedByUser(Integer bookId, Integer userId);
+    List<BookTransactionHistory> findReturnedBooksAfter(
+            Integer userId,
+            LocalDateTime createdDate,
+            Integer id,
+            Pageable pageable
+    );
+
+    // full history variants of the two keyset listings above: the hot table and the archive
+    // (see BookTransactionHistoryArchiver) are each read in index order, then merged
+    @Query(nativeQuery = true, value = """
+            SELECT loan.id AS "id", loan.created_date AS "createdDate",
+                book.title AS "title", book.author_name AS "authorName", book.isbn AS "isbn",
+                book.rating_sum AS "ratingSum", book.rating_count AS "ratingCount",
+                loan.returned AS "returned", loan.return_approved AS "returnApproved"
+            FROM (
+                (SELECT id, created_date, book_id, returned, return_approved
+                FROM book_transaction_history
+                WHERE user_id = :userId
+                AND (created_date, id) < (:createdDate, :id)
+                ORDER BY created_date DESC, id DESC
+                LIMIT :limit)
+                UNION ALL
+                (SELECT id, created_date, book_id, returned, return_approved
+                FROM book_transaction_history_archive
+                WHERE user_id = :userId
+                AND (created_date, id) < (:createdDate, :id)
+                ORDER BY created_date DESC, id DESC
+                LIMIT :limit)
+            ) loan
+            JOIN book ON book.id = loan.book_id
+            ORDER BY loan.created_date DESC, loan.id DESC
+            LIMIT :limit
+            """)
+    List<HistoryRow> findBorrowedBooksWithArchiveAfter(
+            Integer userId,
+            LocalDateTime createdDate,
+            Integer id,
+            int limit
+    );
+
+    @Query(nativeQuery = true, value = """
+            SELECT loan.id AS "id", loan.created_date AS "createdDate",
+                loan.title AS "title", loan.author_name AS "authorName", loan.isbn AS "isbn",
+                loan.rating_sum AS "ratingSum", loan.rating_count AS "ratingCount",
+                loan.returned AS "returned", loan.return_approved AS "returnApproved"
+            FROM (
+                (SELECT history.id, history.created_date, history.returned, history.return_approved,
+                    book.title, book.author_name, book.isbn, book.rating_sum, book.rating_count
+                FROM book
+                JOIN book_transaction_history history ON history.book_id = book.id
+                WHERE book.owner_id = :userId
+                AND (history.created_date, history.id) < (:createdDate, :id)
+                ORDER BY history.created_date DESC, history.id DESC
+                LIMIT :limit)
+                UNION ALL
+                (SELECT archive.id, archive.created_date, archive.returned, archive.return_approved,
+                    book.title, book.author_name, book.isbn, book.rating_sum, book.rating_count
+                FROM book
+                JOIN book_transaction_history_archive archive ON archive.book_id = book.id
+                WHERE book.owner_id = :userId
+                AND (archive.created_date, archive.id) < (:createdDate, :id)
+                ORDER BY archive.created_date DESC, archive.id DESC
+                LIMIT :limit)
+            ) loan
+            ORDER BY loan.created_date DESC, loan.id DESC
+            LIMIT :limit
+            """)
+    List<HistoryRow> findReturnedBooksWithArchiveAfter(
+            Integer userId,
+            LocalDateTime createdDate,
+            Integer id,
+            int limit
+    );
+
+    // the loans not returned by their due date and not reminded since remindedBefore, in
+    // (dueDate, id) order from the given position, see idx_history_open_due_date
+    @Query("""
+            SELECT new com.victor.bookish.history.OverdueLoan(
+                history.id, history.dueDate, borrower.id, borrower.email, borrower.firstname, book.title)
+            FROM BookTransactionHistory history
+            JOIN history.user borrower
+            JOIN history.book book
+            WHERE history.returned = false
+            AND history.dueDate < :now
+            AND (history.dueDate, history.id) > (:dueDate, :id)
+            AND (history.lastRemindedAt IS NULL OR history.lastRemindedAt < :remindedBefore)
+            ORDER BY history.dueDate, history.id
+            """)
+    List<OverdueLoan> findOverdueLoansAfter(
+            LocalDateTime now,
+            LocalDateTime remindedBefore,
+            LocalDateTime dueDate,
+            Integer id,
+            Pageable pageable
+    );
+
+    // all the overdue loans of a borrower not reminded since remindedBefore, for their reminder
+    @Query("""
+            SELECT new com.victor.bookish.history.OverdueLoan(
+                history.id, history.dueDate, borrower.id, borrower.email, borrower.firstname, book.title)
+            FROM BookTransactionHistory history
+            JOIN history.user borrower
+            JOIN history.book book
+            WHERE history.user.id = :userId
+            AND history.returned = false
+            AND history.dueDate < :now
+            AND (history.lastRemindedAt IS NULL OR history.lastRemindedAt < :remindedBefore)
+            ORDER BY history.dueDate, history.id
+            """)
+    List<OverdueLoan> findOverdueLoansOfBorrower(
+            Integer userId,
+            LocalDateTime now,
+            LocalDateTime remindedBefore
+    );
+
+    @Modifying
+    @Query("""
+            UPDATE BookTransactionHistory history
+            SET history.lastRemindedAt = :remindedAt
+            WHERE history.id IN :ids
+            """)
+    int markReminded(Collection<Integer> ids, LocalDateTime remindedAt);
+
+    // the loans opened before dueDate existed get the default loan duration
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            UPDATE book_transaction_history
+            SET due_date = created_date + :seconds * INTERVAL '1 second'
+            WHERE due_date IS NULL
+            AND returned = false
+            """)
+    int backfillDueDates(long seconds);
+
+    // streamed with a server-side cursor for the NDJSON export, archive included (see
+    // BookTransactionHistoryArchiver), as projections: nothing kept in the persistence context
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(nativeQuery = true, value = """
+            SELECT loan.id AS "id", loan.created_date AS "createdDate",
+                book.title AS "title", book.author_name AS "authorName", book.isbn AS "isbn",
+                book.rating_sum AS "ratingSum", book.rating_count AS "ratingCount",
+                loan.returned AS "returned", loan.return_approved AS "returnApproved"
+            FROM book
+            JOIN (
+                SELECT id, created_date, book_id, returned, return_approved
+                FROM book_transaction_history
+                UNION ALL
+                SELECT id, created_date, book_id, returned, return_approved
+                FROM book_transaction_history_archive
+            ) loan ON loan.book_id = book.id
+            WHERE book.owner_id = :userId
+            ORDER BY loan.created_date DESC, loan.id DESC
+            """)
+    Stream<HistoryRow> streamReturnedBooks(Integer userId);
 
     @Query("""
             SELECT transaction
@@ -54,4 +227,32 @@ public interface BookTransactionHistoryRepository extends
             AND transaction.returnApproved = false
             """)
     Optional<BookTransactionHistory> findByBookIdAndOwnerId(Integer bookId, Integer userId);
+
+    // the books of the loans an owner approves in one batch, to lock them beforehand
+    @Query("""
+            SELECT DISTINCT history.book.id
+            FROM BookTransactionHistory history
+            WHERE history.id IN :ids
+            AND history.book.owner.id = :ownerId
+            """)
+    List<Integer> findBookIdsOfOwnerLoans(Collection<Integer> ids, Integer ownerId);
+
+    // Approves every returned loan of the list in one statement, RETURNING tells which ones.
+    // Not @Modifying: the rows it returns are read like the ones of a SELECT
+    @Query(nativeQuery = true, value = """
+            UPDATE book_transaction_history history
+            SET return_approved = true,
+                last_modified_date = LOCALTIMESTAMP,
+                last_modified_by = :ownerId
+            FROM book
+            WHERE history.book_id = book.id
+            AND history.id IN (:ids)
+            AND book.owner_id = :ownerId
+            AND book.archived = false
+            AND book.shareable = true
+            AND history.returned = true
+            AND history.return_approved = false
+            RETURNING history.id AS "id", history.book_id AS "bookId", history.user_id AS "userId"
+            """)
+    List<ApprovedReturn> approveReturns(Collection<Integer> ids, Integer ownerId);
 }
@@ -0,0 +1,25 @@
+package com.victor.bookish.history;
+
+import java.time.LocalDateTime;
+
+// a loan of the hot or the archive table with the book columns the borrowed/returned listings show
+public interface HistoryRow {
+
+    Integer getId();
+
+    LocalDateTime getCreatedDate();
+
+    String getTitle();
+
+    String getAuthorName();
+
+    String getIsbn();
+
+    double getRatingSum();
+
+    int getRatingCount();
+
+    boolean getReturned();
+
+    boolean getReturnApproved();
+}
@@ -0,0 +1,32 @@
+package com.victor.bookish.history;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+
+// Open loans made before BookTransactionHistory.dueDate existed are due a loan duration after the borrow.
+// Idempotent: only the open loans without a due date are updated
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LoanDueDateBackfill implements CommandLineRunner {
+
+    private final BookTransactionHistoryRepository bookTransactionHistoryRepository;
+
+    @Value("${application.loans.duration:14d}")
+    private Duration loanDuration;
+
+    @Override
+    @Transactional
+    public void run(String... args) {
+        int backfilled = bookTransactionHistoryRepository.backfillDueDates(loanDuration.toSeconds());
+        if(backfilled > 0) {
+            log.info("Due date set on {} open loan(s)", backfilled);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.victor.bookish.history;
+
+import java.time.LocalDateTime;
+
+// a loan past its due date, with what the reminder of its borrower needs
+public record OverdueLoan(
+        Integer loanId,
+        LocalDateTime dueDate,
+        Integer userId,
+        String email,
+        String firstname,
+        String title
+) {
+}
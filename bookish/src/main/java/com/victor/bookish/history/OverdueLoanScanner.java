@@ -0,0 +1,112 @@
+package com.victor.bookish.history;
+
+import com.victor.bookish.email.EmailService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Reminds the borrowers of the books they did not return by the due date, at most once a day per
+// loan. The overdue loans are read in (dueDate, id) keyset batches straight from the partial index
+// of the open loans, so the run only costs the overdue ones. Each borrower met in a batch gets one
+// email listing all their late books, read by borrower.
+// Each batch is its own transaction: the reminders are queued in the outbox and their loans marked
+// (lastRemindedAt) together, under an advisory lock. Every instance runs the cron, the one holding
+// the lock scans, and an instance coming later skips the loans already reminded today
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class OverdueLoanScanner {
+
+    private static final int LOCK_KEY = 0x4C4F414E; // "LOAN"
+    private static final Position FIRST_POSITION = new Position(LocalDateTime.of(1970, 1, 1, 0, 0), 0);
+
+    private final BookTransactionHistoryRepository bookTransactionHistoryRepository;
+    private final EmailService emailService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${application.loans.overdue.batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(cron = "${application.loans.overdue.cron:0 0 8 * * *}")
+    public void scan() {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime remindedBefore = now.toLocalDate().atStartOfDay();
+
+        int reminded = 0;
+        Position position = FIRST_POSITION;
+        Batch batch;
+        do {
+            Position from = position;
+            batch = transactionTemplate.execute(status -> remindBatch(now, remindedBefore, from));
+            if(batch == null) {
+                // another instance holds the lock, it goes on from what was committed
+                break;
+            }
+            reminded += batch.reminded();
+            position = batch.next();
+        } while (batch.more());
+
+        if(reminded > 0 || batch != null) {
+            log.info("{} borrower(s) reminded of their overdue loans in {} ms",
+                    reminded, System.currentTimeMillis() - start);
+        }
+    }
+
+    private Batch remindBatch(LocalDateTime now, LocalDateTime remindedBefore, Position from) {
+        Boolean locked = jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?, 0)", Boolean.class, LOCK_KEY);
+        if(!Boolean.TRUE.equals(locked)) {
+            return null;
+        }
+
+        List<OverdueLoan> loans = bookTransactionHistoryRepository.findOverdueLoansAfter(
+                now, remindedBefore, from.dueDate(), from.id(), PageRequest.ofSize(batchSize));
+        if(loans.isEmpty()) {
+            return new Batch(0, from, false);
+        }
+
+        // the later loans of these borrowers are marked with them, the next batches skip them
+        Set<Integer> borrowerIds = new LinkedHashSet<>();
+        loans.forEach(loan -> borrowerIds.add(loan.userId()));
+        int reminded = 0;
+        for(Integer borrowerId : borrowerIds) {
+            List<OverdueLoan> borrowerLoans = bookTransactionHistoryRepository
+                    .findOverdueLoansOfBorrower(borrowerId, now, remindedBefore);
+            if(borrowerLoans.isEmpty()) {
+                // returned since the batch was read
+                continue;
+            }
+            remind(borrowerLoans);
+            reminded++;
+            // committed with the queued email
+            bookTransactionHistoryRepository.markReminded(
+                    borrowerLoans.stream().map(OverdueLoan::loanId).toList(), now);
+        }
+
+        OverdueLoan last = loans.get(loans.size() - 1);
+        return new Batch(reminded, new Position(last.dueDate(), last.loanId()), loans.size() == batchSize);
+    }
+
+    private void remind(List<OverdueLoan> loans) {
+        OverdueLoan first = loans.get(0);
+        emailService.sendOverdueReminder(first.email(), first.firstname(), loans);
+    }
+
+    private record Position(LocalDateTime dueDate, Integer id) {
+    }
+
+    private record Batch(int reminded, Position next, boolean more) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.victor.bookish.ledger;
+
+public record BookOwner(
+        Integer bookId,
+        Integer ownerId
+) {
+}
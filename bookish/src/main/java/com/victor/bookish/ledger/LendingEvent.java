@@ -0,0 +1,44 @@
+package com.victor.bookish.ledger;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Append-only log of what happened to the loans (a loan = a BookTransactionHistory row).
+// Never updated nor deleted, the views of LendingProjector are rebuilt from it
+@Getter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        // the rescan of LendingProjector, in its keyset order
+        @Index(name = "idx_lending_event_occurred_at", columnList = "occurredAt, id"),
+        @Index(name = "idx_lending_event_loan_id", columnList = "loanId")
+})
+public class LendingEvent {
+
+    @Id
+    @GeneratedValue
+    private Integer id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private LendingEventType type;
+
+    @Column(nullable = false, updatable = false)
+    private Integer loanId;
+
+    @Column(nullable = false, updatable = false)
+    private Integer bookId;
+
+    @Column(nullable = false, updatable = false)
+    private Integer borrowerId;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,43 @@
+package com.victor.bookish.ledger;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface LendingEventRepository extends JpaRepository<LendingEvent, Integer> {
+
+    @Query("""
+            SELECT event
+            FROM LendingEvent event
+            WHERE event.id > :id
+            ORDER BY event.id
+            """)
+    List<LendingEvent> findAfter(Integer id, Pageable pageable);
+
+    // events at or below the checkpoint that are recent enough to have been committed after it moved,
+    // in (occurredAt, id) order from the given position
+    @Query("""
+            SELECT event
+            FROM LendingEvent event
+            WHERE event.id <= :upToId
+            AND (event.occurredAt, event.id) > (:occurredAt, :id)
+            ORDER BY event.occurredAt, event.id
+            """)
+    List<LendingEvent> findRecentUpTo(Integer upToId, LocalDateTime occurredAt, Integer id, Pageable pageable);
+
+    // the loans that were recorded before the ledger existed, see LendingLedgerBackfill
+    @Query("""
+            SELECT history.id
+            FROM BookTransactionHistory history
+            WHERE history.id > :id
+            AND NOT EXISTS (
+                SELECT event.id
+                FROM LendingEvent event
+                WHERE event.loanId = history.id)
+            ORDER BY history.id
+            """)
+    List<Integer> findLoanIdsWithoutEvents(Integer id, Pageable pageable);
+}
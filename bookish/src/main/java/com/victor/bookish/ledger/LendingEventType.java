@@ -0,0 +1,9 @@
+package com.victor.bookish.ledger;
+
+// in the order a loan goes through them: a projection keeps the furthest state it has seen,
+// so the events of a loan can be applied in any order, and more than once
+public enum LendingEventType {
+    BORROWED,
+    RETURNED,
+    RETURN_APPROVED
+}
@@ -0,0 +1,5 @@
+package com.victor.bookish.ledger;
+
+// published once per transaction appending events, wakes LendingProjector up once it commits
+public record LendingEventsAppended() {
+}
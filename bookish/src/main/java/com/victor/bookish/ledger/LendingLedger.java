@@ -0,0 +1,47 @@
+package com.victor.bookish.ledger;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+// Appends to the LendingEvent log, in the transaction of the workflow that changed the loan:
+// the event exists if and only if the change was committed
+@Service
+@RequiredArgsConstructor
+public class LendingLedger {
+
+    private final LendingEventRepository lendingEventRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    public void append(LendingEventType type, Integer loanId, Integer bookId, Integer borrowerId) {
+        append(type, loanId, bookId, borrowerId, LocalDateTime.now());
+    }
+
+    void append(LendingEventType type, Integer loanId, Integer bookId, Integer borrowerId, LocalDateTime occurredAt) {
+        lendingEventRepository.save(LendingEvent.builder()
+                .type(type)
+                .loanId(loanId)
+                .bookId(bookId)
+                .borrowerId(borrowerId)
+                .occurredAt(occurredAt)
+                .build());
+
+        // one wake up per transaction, however many events it appends
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            if(TransactionSynchronizationManager.getSynchronizations().stream()
+                    .anyMatch(WakeUpPublished.class::isInstance)) {
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new WakeUpPublished());
+        }
+        applicationEventPublisher.publishEvent(new LendingEventsAppended());
+    }
+
+    // marks the transactions that already published their LendingEventsAppended
+    private static class WakeUpPublished implements TransactionSynchronization {
+    }
+}
@@ -0,0 +1,76 @@
+package com.victor.bookish.ledger;
+
+import com.victor.bookish.history.BookTransactionHistory;
+import com.victor.bookish.history.BookTransactionHistoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+// Once the application is up: records the events of the loans made before the ledger existed
+// (from the state of their BookTransactionHistory row), then brings the views up to date,
+// replaying the whole log when application.ledger.replay-on-startup is set
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LendingLedgerBackfill {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final LendingLedger lendingLedger;
+    private final LendingEventRepository lendingEventRepository;
+    private final BookTransactionHistoryRepository bookTransactionHistoryRepository;
+    private final LendingProjector lendingProjector;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${application.ledger.replay-on-startup:false}")
+    private boolean replayOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        int backfilled = 0;
+        int lastId = 0;
+        List<Integer> loanIds;
+        do {
+            loanIds = lendingEventRepository.findLoanIdsWithoutEvents(lastId, PageRequest.ofSize(BATCH_SIZE));
+            if(loanIds.isEmpty()) {
+                break;
+            }
+            List<Integer> batch = loanIds;
+            transactionTemplate.executeWithoutResult(status ->
+                    bookTransactionHistoryRepository.findAllById(batch).forEach(this::appendEvents));
+            backfilled += loanIds.size();
+            lastId = loanIds.get(loanIds.size() - 1);
+        } while(loanIds.size() == BATCH_SIZE);
+
+        if(backfilled > 0) {
+            log.info("Lending events recorded for {} loan(s) made before the ledger", backfilled);
+        }
+
+        if(replayOnStartup) {
+            lendingProjector.replay();
+        } else {
+            lendingProjector.project();
+        }
+    }
+
+    private void appendEvents(BookTransactionHistory loan) {
+        Integer bookId = loan.getBook().getId();
+        Integer borrowerId = loan.getUser().getId();
+        var changedAt = loan.getLastModifiedDate() != null ? loan.getLastModifiedDate() : loan.getCreatedDate();
+
+        lendingLedger.append(LendingEventType.BORROWED, loan.getId(), bookId, borrowerId, loan.getCreatedDate());
+        if(loan.isReturned()) {
+            lendingLedger.append(LendingEventType.RETURNED, loan.getId(), bookId, borrowerId, changedAt);
+        }
+        if(loan.isReturnApproved()) {
+            lendingLedger.append(LendingEventType.RETURN_APPROVED, loan.getId(), bookId, borrowerId, changedAt);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.victor.bookish.ledger;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Projects the LendingEvent log into LoanView, asynchronously: right after the commit of new
+// events, and every few seconds in case a wake up was missed (another instance, a crash).
+// Ids are allocated in blocks per instance, so an event can commit with an id below the checkpoint:
+// the scheduled run also applies the events of the last application.ledger.rescan-window again,
+// in batches, which is harmless since applying an event is idempotent (see LendingEventType).
+// A wake up only projects the events after the checkpoint, its cost follows the new events
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class LendingProjector {
+
+    static final String LOANS_PROJECTION = "loans";
+    private static final int BATCH_SIZE = 500;
+
+    private final LendingEventRepository lendingEventRepository;
+    private final LoanViewRepository loanViewRepository;
+    private final ProjectionCheckpointRepository projectionCheckpointRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private final AtomicBoolean wakeUpRunning = new AtomicBoolean();
+
+    @Value("${application.ledger.rescan-window:1m}")
+    private Duration rescanWindow;
+
+    // The wake ups are coalesced: one arriving during a run only asks that run to go again once
+    // it is done, instead of queueing another project() behind the checkpoint lock
+    @Async
+    @TransactionalEventListener
+    public void onEventsAppended(LendingEventsAppended eventsAppended) {
+        wakeUpPending.set(true);
+        while(wakeUpPending.get() && wakeUpRunning.compareAndSet(false, true)) {
+            try {
+                wakeUpPending.set(false);
+                project();
+            } finally {
+                wakeUpRunning.set(false);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.ledger.projection-delay-ms:5000}")
+    public void rescanAndProject() {
+        rescan();
+        project();
+    }
+
+    // the events committed below the checkpoint, see above
+    private void rescan() {
+        RescanPosition position = new RescanPosition(LocalDateTime.now().minus(rescanWindow), 0);
+        while(position != null) {
+            RescanPosition from = position;
+            position = transactionTemplate.execute(status -> {
+                ProjectionCheckpoint checkpoint = lockCheckpoint();
+                List<LendingEvent> events = lendingEventRepository.findRecentUpTo(
+                        checkpoint.getLastEventId(),
+                        from.occurredAt(),
+                        from.id(),
+                        PageRequest.ofSize(BATCH_SIZE)
+                );
+                apply(events);
+                if(events.size() < BATCH_SIZE) {
+                    return null;
+                }
+                LendingEvent last = events.get(events.size() - 1);
+                return new RescanPosition(last.getOccurredAt(), last.getId());
+            });
+        }
+    }
+
+    // the events after the checkpoint
+    public void project() {
+        boolean more = true;
+        while(more) {
+            more = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                ProjectionCheckpoint checkpoint = lockCheckpoint();
+                List<LendingEvent> events = lendingEventRepository.findAfter(
+                        checkpoint.getLastEventId(),
+                        PageRequest.ofSize(BATCH_SIZE)
+                );
+                if(events.isEmpty()) {
+                    return false;
+                }
+                apply(events);
+                checkpoint.setLastEventId(events.get(events.size() - 1).getId());
+                return events.size() == BATCH_SIZE;
+            }));
+        }
+    }
+
+    // drops the views and projects the whole log again
+    public void replay() {
+        long start = System.currentTimeMillis();
+        transactionTemplate.executeWithoutResult(status -> {
+            ProjectionCheckpoint checkpoint = lockCheckpoint();
+            loanViewRepository.deleteAllInBatch();
+            checkpoint.setLastEventId(0);
+        });
+        project();
+        log.info("Loan views replayed from the lending events in {} ms", System.currentTimeMillis() - start);
+    }
+
+    private ProjectionCheckpoint lockCheckpoint() {
+        return projectionCheckpointRepository.findForUpdate(LOANS_PROJECTION)
+                .orElseGet(() -> projectionCheckpointRepository.saveAndFlush(
+                        new ProjectionCheckpoint(LOANS_PROJECTION, 0)));
+    }
+
+    private void apply(List<LendingEvent> events) {
+        if(events.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> loanIds = events.stream().map(LendingEvent::getLoanId).collect(Collectors.toSet());
+        Map<Integer, LoanView> views = loanViewRepository.findAllById(loanIds).stream()
+                .collect(Collectors.toMap(LoanView::getLoanId, Function.identity()));
+
+        Set<Integer> newBookIds = new HashSet<>();
+        for(LendingEvent event : events) {
+            if(!views.containsKey(event.getLoanId())) {
+                newBookIds.add(event.getBookId());
+            }
+        }
+        Map<Integer, Integer> owners = newBookIds.isEmpty()
+                ? Map.of()
+                : loanViewRepository.findBookOwners(newBookIds).stream()
+                        .collect(Collectors.toMap(BookOwner::bookId, BookOwner::ownerId));
+
+        for(LendingEvent event : events) {
+            LoanView view = views.get(event.getLoanId());
+            if(view == null) {
+                view = LoanView.builder()
+                        .loanId(event.getLoanId())
+                        .bookId(event.getBookId())
+                        .borrowerId(event.getBorrowerId())
+                        .ownerId(owners.get(event.getBookId()))
+                        .build();
+                // persist rather than save: the id is assigned, save would SELECT it first
+                entityManager.persist(view);
+                views.put(view.getLoanId(), view);
+            }
+
+            switch (event.getType()) {
+                case BORROWED -> view.setBorrowedAt(event.getOccurredAt());
+                case RETURNED -> view.setReturned(true);
+                case RETURN_APPROVED -> {
+                    view.setReturned(true);
+                    view.setReturnApproved(true);
+                }
+            }
+        }
+    }
+
+    private record RescanPosition(LocalDateTime occurredAt, Integer id) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.victor.bookish.ledger;
+
+// a LoanView row with the book columns the borrowed/returned listings show
+public record LoanSummary(
+        Integer loanId,
+        String title,
+        String authorName,
+        String isbn,
+        double ratingSum,
+        int ratingCount,
+        boolean returned,
+        boolean returnApproved
+) {
+}
@@ -0,0 +1,42 @@
+package com.victor.bookish.ledger;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Read model of the loans, projected from the LendingEvent log by LendingProjector.
+// One row per loan, indexed for each listing it serves
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        // loans per borrower (borrowed books listing)
+        @Index(name = "idx_loan_view_borrower_borrowed_at", columnList = "borrowerId, borrowedAt, loanId"),
+        // loans per owner (returned books listing)
+        @Index(name = "idx_loan_view_owner_borrowed_at", columnList = "ownerId, borrowedAt, loanId"),
+        // returns waiting for the approval of the owner (the pending inbox), newest first
+        @Index(name = "idx_loan_view_owner_pending_borrowed_at",
+                columnList = "ownerId, returned, returnApproved, borrowedAt, loanId"),
+        // history per book
+        @Index(name = "idx_loan_view_book_borrowed_at", columnList = "bookId, borrowedAt, loanId")
+})
+public class LoanView {
+
+    @Id
+    private Integer loanId;
+
+    private Integer bookId;
+    private Integer borrowerId;
+    private Integer ownerId;
+    private LocalDateTime borrowedAt;
+    private boolean returned;
+    private boolean returnApproved;
+}
@@ -0,0 +1,137 @@
+package com.victor.bookish.ledger;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface LoanViewRepository extends JpaRepository<LoanView, Integer> {
+
+    // the pageables are sorted on loan.borrowedAt
+    @Query(value = """
+            SELECT new com.victor.bookish.ledger.LoanSummary(
+                loan.loanId, book.title, book.authorName, book.isbn,
+                book.ratingSum, book.ratingCount, loan.returned, loan.returnApproved)
+            FROM LoanView loan
+            JOIN Book book ON book.id = loan.bookId
+            WHERE loan.borrowerId = :userId
+            """,
+            countQuery = """
+            SELECT COUNT(loan)
+            FROM LoanView loan
+            WHERE loan.borrowerId = :userId
+            """)
+    Page<LoanSummary> findBorrowerLoans(Pageable pageable, Integer userId);
+
+    @Query("""
+            SELECT new com.victor.bookish.ledger.LoanSummary(
+                loan.loanId, book.title, book.authorName, book.isbn,
+                book.ratingSum, book.ratingCount, loan.returned, loan.returnApproved)
+            FROM LoanView loan
+            JOIN Book book ON book.id = loan.bookId
+            WHERE loan.borrowerId = :userId
+            """)
+    Slice<LoanSummary> findBorrowerLoansSlice(Pageable pageable, Integer userId);
+
+    @Query("""
+            SELECT COUNT(loan)
+            FROM LoanView loan
+            WHERE loan.borrowerId = :userId
+            """)
+    long countBorrowerLoans(Integer userId);
+
+    @Query(value = """
+            SELECT new com.victor.bookish.ledger.LoanSummary(
+                loan.loanId, book.title, book.authorName, book.isbn,
+                book.ratingSum, book.ratingCount, loan.returned, loan.returnApproved)
+            FROM LoanView loan
+            JOIN Book book ON book.id = loan.bookId
+            WHERE loan.ownerId = :ownerId
+            """,
+            countQuery = """
+            SELECT COUNT(loan)
+            FROM LoanView loan
+            WHERE loan.ownerId = :ownerId
+            """)
+    Page<LoanSummary> findOwnerLoans(Pageable pageable, Integer ownerId);
+
+    @Query("""
+            SELECT new com.victor.bookish.ledger.LoanSummary(
+                loan.loanId, book.title, book.authorName, book.isbn,
+                book.ratingSum, book.ratingCount, loan.returned, loan.returnApproved)
+            FROM LoanView loan
+            JOIN Book book ON book.id = loan.bookId
+            WHERE loan.ownerId = :ownerId
+            """)
+    Slice<LoanSummary> findOwnerLoansSlice(Pageable pageable, Integer ownerId);
+
+    @Query("""
+            SELECT COUNT(loan)
+            FROM LoanView loan
+            WHERE loan.ownerId = :ownerId
+            """)
+    long countOwnerLoans(Integer ownerId);
+
+    // the pending inbox of an owner: returned, not approved yet
+    @Query(value = """
+            SELECT new com.victor.bookish.ledger.LoanSummary(
+                loan.loanId, book.title, book.authorName, book.isbn,
+                book.ratingSum, book.ratingCount, loan.returned, loan.returnApproved)
+            FROM LoanView loan
+            JOIN Book book ON book.id = loan.bookId
+            WHERE loan.ownerId = :ownerId
+            AND loan.returned = true
+            AND loan.returnApproved = false
+            """,
+            countQuery = """
+            SELECT COUNT(loan)
+            FROM LoanView loan
+            WHERE loan.ownerId = :ownerId
+            AND loan.returned = true
+            AND loan.returnApproved = false
+            """)
+    Page<LoanSummary> findPendingApprovals(Pageable pageable, Integer ownerId);
+
+    @Query("""
+            SELECT new com.victor.bookish.ledger.LoanSummary(
+                loan.loanId, book.title, book.authorName, book.isbn,
+                book.ratingSum, book.ratingCount, loan.returned, loan.returnApproved)
+            FROM LoanView loan
+            JOIN Book book ON book.id = loan.bookId
+            WHERE loan.ownerId = :ownerId
+            AND loan.returned = true
+            AND loan.returnApproved = false
+            """)
+    Slice<LoanSummary> findPendingApprovalsSlice(Pageable pageable, Integer ownerId);
+
+    @Query("""
+            SELECT COUNT(loan)
+            FROM LoanView loan
+            WHERE loan.ownerId = :ownerId
+            AND loan.returned = true
+            AND loan.returnApproved = false
+            """)
+    long countPendingApprovals(Integer ownerId);
+
+    @Query("""
+            SELECT new com.victor.bookish.ledger.LoanSummary(
+                loan.loanId, book.title, book.authorName, book.isbn,
+                book.ratingSum, book.ratingCount, loan.returned, loan.returnApproved)
+            FROM LoanView loan
+            JOIN Book book ON book.id = loan.bookId
+            WHERE loan.bookId = :bookId
+            """)
+    Slice<LoanSummary> findBookLoansSlice(Pageable pageable, Integer bookId);
+
+    // owners of the books of the loans a projection batch creates
+    @Query("""
+            SELECT new com.victor.bookish.ledger.BookOwner(book.id, book.owner.id)
+            FROM Book book
+            WHERE book.id IN :bookIds
+            """)
+    List<BookOwner> findBookOwners(Collection<Integer> bookIds);
+}
@@ -0,0 +1,23 @@
+package com.victor.bookish.ledger;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// id of the last LendingEvent applied to the views of a projection.
+// The row is locked while a batch is projected, so only one instance projects at a time
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+public class ProjectionCheckpoint {
+
+    @Id
+    private String name;
+
+    private int lastEventId;
+}
@@ -0,0 +1,20 @@
+package com.victor.bookish.ledger;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface ProjectionCheckpointRepository extends JpaRepository<ProjectionCheckpoint, String> {
+
+    // SELECT ... FOR UPDATE: the projections of the other instances wait for this one
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            SELECT checkpoint
+            FROM ProjectionCheckpoint checkpoint
+            WHERE checkpoint.name = :name
+            """)
+    Optional<ProjectionCheckpoint> findForUpdate(String name);
+}
@@ -0,0 +1,43 @@
+package com.victor.bookish.reservation;
+
+import com.victor.bookish.book.Book;
+import com.victor.bookish.common.BaseEntity;
+import com.victor.bookish.user.User;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@SuperBuilder
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        // the queue of a book, in FIFO order
+        @Index(name = "idx_reservation_book_status_created_date_id", columnList = "book_id, status, createdDate, id"),
+        @Index(name = "idx_reservation_user_book", columnList = "user_id, book_id"),
+        // ReservationExpiryJob
+        @Index(name = "idx_reservation_status_offer_expires_at", columnList = "status, offerExpiresAt")
+})
+public class Reservation extends BaseEntity {
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id")
+    private Book book;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    private ReservationStatus status;
+
+    // only set once the book is offered
+    private LocalDateTime offerExpiresAt;
+}
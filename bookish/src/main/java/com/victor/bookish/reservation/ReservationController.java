@@ -0,0 +1,42 @@
+package com.victor.bookish.reservation;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("reservations")
+@RequiredArgsConstructor
+@Tag(name = "Reservation")
+public class ReservationController {
+
+    private final ReservationService reservationService;
+
+    // joins the waitlist of a borrowed book, instead of retrying the borrow
+    @PostMapping("/{book-id}")
+    public ResponseEntity<ReservationResponse> reserveBook(
+            @PathVariable("book-id") Integer bookId,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(reservationService.reserve(bookId, connectedUser));
+    }
+
+    @GetMapping("/{book-id}")
+    public ResponseEntity<ReservationResponse> findReservation(
+            @PathVariable("book-id") Integer bookId,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(reservationService.findReservation(bookId, connectedUser));
+    }
+
+    @DeleteMapping("/{book-id}")
+    public ResponseEntity<Void> cancelReservation(
+            @PathVariable("book-id") Integer bookId,
+            Authentication connectedUser
+    ) {
+        reservationService.cancel(bookId, connectedUser);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,9 @@
+package com.victor.bookish.reservation;
+
+// a waiting user in the queue of a book, see ReservationQueues
+public record ReservationEntry(
+        Integer reservationId,
+        Integer bookId,
+        Integer userId
+) {
+}
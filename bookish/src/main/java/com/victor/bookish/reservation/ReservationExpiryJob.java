@@ -0,0 +1,35 @@
+package com.victor.bookish.reservation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Passes the books whose offer was not claimed in time to the next user in line
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ReservationExpiryJob {
+
+    private final ReservationRepository reservationRepository;
+    private final ReservationService reservationService;
+
+    @Scheduled(fixedDelayString = "${application.reservations.expiry-check-delay-ms:60000}")
+    public void expireOffers() {
+        List<ReservationEntry> expired = reservationRepository.findExpiredOffers(LocalDateTime.now());
+        for(ReservationEntry offer : expired) {
+            try {
+                reservationService.expireOffer(offer);
+            } catch (RuntimeException e) {
+                // the book lock timed out for instance, the next run retries
+                log.warn("Could not expire the reservation {}", offer.reservationId(), e);
+            }
+        }
+        if(!expired.isEmpty()) {
+            log.info("{} reservation offer(s) expired", expired.size());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.victor.bookish.reservation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Builds ReservationQueues from the WAITING reservations once the application is up
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ReservationQueueLoader {
+
+    private final ReservationRepository reservationRepository;
+    private final ReservationQueues reservationQueues;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        reservationQueues.clear();
+
+        List<ReservationEntry> waiting = reservationRepository.findAllWaiting();
+        waiting.forEach(entry -> reservationQueues.enqueue(entry.bookId(), entry.userId()));
+
+        log.info("Reservation queues built with {} waiting reservation(s)", waiting.size());
+    }
+}
@@ -0,0 +1,85 @@
+package com.victor.bookish.reservation;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory view of the WAITING reservations, one FIFO queue per book, so the position of a user
+// is read in O(1) instead of counting the rows ahead of theirs. Only a cache: the Reservation table
+// is the source of truth, and a user missing from the view is looked up there (ReservationService).
+// ReservationService updates this view once its transactions commit, and ReservationQueueLoader
+// rebuilds it at startup. The view is per instance, so it only follows the changes made by this one
+@Component
+public class ReservationQueues {
+
+    private final Map<Integer, BookQueue> queues = new ConcurrentHashMap<>();
+
+    public void clear() {
+        queues.clear();
+    }
+
+    public void enqueue(Integer bookId, Integer userId) {
+        queues.computeIfAbsent(bookId, id -> new BookQueue()).add(userId);
+    }
+
+    public void remove(Integer bookId, Integer userId) {
+        queues.computeIfPresent(bookId, (id, queue) -> queue.remove(userId) ? null : queue);
+    }
+
+    // 1-based, 0 when the user is not waiting for the book
+    public int position(Integer bookId, Integer userId) {
+        BookQueue queue = queues.get(bookId);
+        return queue == null ? 0 : queue.position(userId);
+    }
+
+    // Users in arrival order from 'head', with the index of each one: the head leaves by moving
+    // 'head' (O(1)), a user leaving from the middle shifts the ones behind (O(n), rare)
+    private static class BookQueue {
+
+        private final List<Integer> userIds = new ArrayList<>();
+        private final Map<Integer, Integer> indexes = new HashMap<>();
+        private int head;
+
+        synchronized void add(Integer userId) {
+            if(indexes.putIfAbsent(userId, userIds.size()) == null) {
+                userIds.add(userId);
+            }
+        }
+
+        // true when the queue is empty afterwards
+        synchronized boolean remove(Integer userId) {
+            Integer index = indexes.remove(userId);
+            if(index != null) {
+                if(index == head) {
+                    userIds.set(head++, null);
+                } else {
+                    userIds.remove((int) index);
+                    for(int i = index; i < userIds.size(); i++) {
+                        indexes.put(userIds.get(i), i);
+                    }
+                }
+                if(head > 64 && head > userIds.size() / 2) {
+                    compact();
+                }
+            }
+            return indexes.isEmpty();
+        }
+
+        synchronized int position(Integer userId) {
+            Integer index = indexes.get(userId);
+            return index == null ? 0 : index - head + 1;
+        }
+
+        private void compact() {
+            userIds.subList(0, head).clear();
+            head = 0;
+            for(int i = 0; i < userIds.size(); i++) {
+                indexes.put(userIds.get(i), i);
+            }
+        }
+    }
+}
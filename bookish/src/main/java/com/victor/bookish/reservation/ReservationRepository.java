@@ -0,0 +1,63 @@
+package com.victor.bookish.reservation;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReservationRepository extends JpaRepository<Reservation, Integer> {
+
+    // the head of the queue of a book with a PageRequest.ofSize(1)
+    @Query("""
+            SELECT reservation
+            FROM Reservation reservation
+            WHERE reservation.book.id = :bookId
+            AND reservation.status = com.victor.bookish.reservation.ReservationStatus.WAITING
+            ORDER BY reservation.createdDate, reservation.id
+            """)
+    List<Reservation> findWaitingByBookId(Integer bookId, Pageable pageable);
+
+    // the reservations waiting before the one at (createdDate, id), on the queue index
+    @Query("""
+            SELECT COUNT(reservation)
+            FROM Reservation reservation
+            WHERE reservation.book.id = :bookId
+            AND reservation.status = com.victor.bookish.reservation.ReservationStatus.WAITING
+            AND (reservation.createdDate < :createdDate
+                OR (reservation.createdDate = :createdDate AND reservation.id < :id))
+            """)
+    long countWaitingAhead(Integer bookId, LocalDateTime createdDate, Integer id);
+
+    @Query("""
+            SELECT reservation
+            FROM Reservation reservation
+            WHERE reservation.book.id = :bookId
+            AND reservation.user.id = :userId
+            AND reservation.status IN (
+                com.victor.bookish.reservation.ReservationStatus.WAITING,
+                com.victor.bookish.reservation.ReservationStatus.OFFERED)
+            """)
+    Optional<Reservation> findActive(Integer bookId, Integer userId);
+
+    @Query("""
+            SELECT new com.victor.bookish.reservation.ReservationEntry(
+                reservation.id, reservation.book.id, reservation.user.id)
+            FROM Reservation reservation
+            WHERE reservation.status = com.victor.bookish.reservation.ReservationStatus.OFFERED
+            AND reservation.offerExpiresAt <= :now
+            """)
+    List<ReservationEntry> findExpiredOffers(LocalDateTime now);
+
+    // every queue, in FIFO order, to build ReservationQueues
+    @Query("""
+            SELECT new com.victor.bookish.reservation.ReservationEntry(
+                reservation.id, reservation.book.id, reservation.user.id)
+            FROM Reservation reservation
+            WHERE reservation.status = com.victor.bookish.reservation.ReservationStatus.WAITING
+            ORDER BY reservation.createdDate, reservation.id
+            """)
+    List<ReservationEntry> findAllWaiting();
+}
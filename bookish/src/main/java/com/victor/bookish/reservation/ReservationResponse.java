@@ -0,0 +1,12 @@
+package com.victor.bookish.reservation;
+
+import java.time.LocalDateTime;
+
+public record ReservationResponse(
+        Integer bookId,
+        ReservationStatus status,
+        // 1 = next in line, 0 once the book is offered
+        int position,
+        LocalDateTime offerExpiresAt
+) {
+}
@@ -0,0 +1,218 @@
+package com.victor.bookish.reservation;
+
+import com.victor.bookish.book.Book;
+import com.victor.bookish.book.BookLockManager;
+import com.victor.bookish.book.BookRepository;
+import com.victor.bookish.exception.OperationNotPermittedException;
+import com.victor.bookish.user.UserPrincipal;
+import com.victor.bookish.user.UserRepository;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+// Waitlist of the borrowed books. A user reserves a borrowed book instead of retrying the borrow;
+// when the return is approved, the book is held for the head of the queue (Book.borrowerId),
+// who has application.reservations.claim-window to borrow it before it goes to the next one.
+// Everything touching a queue runs under the lock of its book (BookLockManager)
+@Service
+@RequiredArgsConstructor
+public class ReservationService {
+
+    private final BookRepository bookRepository;
+    private final ReservationRepository reservationRepository;
+    private final ReservationQueues reservationQueues;
+    private final BookLockManager bookLockManager;
+    private final UserRepository userRepository;
+
+    @Value("${application.reservations.claim-window:24h}")
+    private Duration claimWindow;
+
+    // The in-memory queues only see the reservations made by this instance: with the advisory locks
+    // (several instances) they are not read, the positions always come from the table
+    @Value("${application.books.lock.mode:local}")
+    private String lockMode;
+
+    public ReservationResponse reserve(Integer bookId, Authentication connectedUser) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+        return bookLockManager.withLock(bookId, () -> {
+            Book book = bookRepository.findById(bookId)
+                    .orElseThrow(() ->
+                            new EntityNotFoundException("No book found with ID:: " + bookId));
+
+            if(book.isArchived() || !book.isShareable()) {
+                throw new OperationNotPermittedException(
+                        "The requested book cannot be reserved since it is archived or not sharable"
+                );
+            }
+
+            if(Objects.equals(book.getOwner().getId(), user.getId())) {
+                throw new OperationNotPermittedException("You cannot reserve your own book");
+            }
+
+            // reserving twice (a retried request) answers the current reservation
+            Reservation existing = reservationRepository.findActive(bookId, user.getId()).orElse(null);
+            if(existing != null) {
+                return toReservationResponse(existing);
+            }
+
+            if(book.getBorrowerId() == null) {
+                throw new OperationNotPermittedException("The requested book is available, borrow it instead");
+            }
+
+            if(Objects.equals(book.getBorrowerId(), user.getId())) {
+                throw new OperationNotPermittedException("You already borrowed this book");
+            }
+
+            Reservation reservation = reservationRepository.save(Reservation.builder()
+                    .book(book)
+                    .user(userRepository.getReferenceById(user.getId()))
+                    .status(ReservationStatus.WAITING)
+                    .build());
+            afterCommit(() -> reservationQueues.enqueue(bookId, user.getId()));
+
+            // the book lock is held until the commit, nobody can join the queue in between
+            return new ReservationResponse(bookId, ReservationStatus.WAITING, positionOf(reservation), null);
+        });
+    }
+
+    public ReservationResponse findReservation(Integer bookId, Authentication connectedUser) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        // a waiting user (the most frequent poll) is answered from memory when the queue has them,
+        // otherwise (not waiting, or waiting since a change this instance did not see) from the table
+        if(isQueueCacheUsed()) {
+            int position = reservationQueues.position(bookId, user.getId());
+            if(position > 0) {
+                return new ReservationResponse(bookId, ReservationStatus.WAITING, position, null);
+            }
+        }
+
+        return reservationRepository.findActive(bookId, user.getId())
+                .map(this::toReservationResponse)
+                .orElseThrow(() ->
+                        new EntityNotFoundException("No reservation found for the book with ID:: " + bookId));
+    }
+
+    public void cancel(Integer bookId, Authentication connectedUser) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+        bookLockManager.withLock(bookId, () -> {
+            Reservation reservation = reservationRepository.findActive(bookId, user.getId())
+                    .orElseThrow(() ->
+                            new EntityNotFoundException("No reservation found for the book with ID:: " + bookId));
+
+            ReservationStatus status = reservation.getStatus();
+            reservation.setStatus(ReservationStatus.CANCELLED);
+            reservationRepository.save(reservation);
+
+            if(status == ReservationStatus.OFFERED) {
+                // the book was held for this user, it goes to the next one
+                bookRepository.clearBorrower(bookId, user.getId());
+                offerNext(bookId);
+            } else {
+                afterCommit(() -> reservationQueues.remove(bookId, user.getId()));
+            }
+            return null;
+        });
+    }
+
+    // The book just became available (return approved): hold it for the head of the queue.
+    // Must run in the transaction of the caller, under the lock of the book
+    public void offerNext(Integer bookId) {
+        List<Reservation> next = reservationRepository.findWaitingByBookId(bookId, PageRequest.ofSize(1));
+        if(next.isEmpty()) {
+            return;
+        }
+
+        Reservation reservation = next.get(0);
+        Integer userId = reservation.getUser().getId();
+
+        // refused when the book was archived or unshared meanwhile: the queue waits
+        if(bookRepository.markBorrowed(bookId, userId) == 0) {
+            return;
+        }
+
+        reservation.setStatus(ReservationStatus.OFFERED);
+        reservation.setOfferExpiresAt(LocalDateTime.now().plus(claimWindow));
+        reservationRepository.save(reservation);
+        afterCommit(() -> reservationQueues.remove(bookId, userId));
+    }
+
+    // Whether the book is held for the user and they can borrow it now.
+    // Must run in the transaction of the borrow, under the lock of the book
+    public boolean claim(Integer bookId, Integer userId) {
+        Reservation reservation = reservationRepository.findActive(bookId, userId).orElse(null);
+        if(reservation == null
+                || reservation.getStatus() != ReservationStatus.OFFERED
+                || reservation.getOfferExpiresAt().isBefore(LocalDateTime.now())) {
+            return false;
+        }
+
+        reservation.setStatus(ReservationStatus.CLAIMED);
+        reservationRepository.save(reservation);
+        return true;
+    }
+
+    // ReservationExpiryJob: the offer was not claimed in time
+    public void expireOffer(ReservationEntry offer) {
+        bookLockManager.withLock(offer.bookId(), () -> {
+            Reservation reservation = reservationRepository.findById(offer.reservationId()).orElse(null);
+            // claimed or cancelled since the job listed it
+            if(reservation == null
+                    || reservation.getStatus() != ReservationStatus.OFFERED
+                    || reservation.getOfferExpiresAt().isAfter(LocalDateTime.now())) {
+                return null;
+            }
+
+            reservation.setStatus(ReservationStatus.EXPIRED);
+            reservationRepository.save(reservation);
+            bookRepository.clearBorrower(offer.bookId(), offer.userId());
+            offerNext(offer.bookId());
+            return null;
+        });
+    }
+
+    private ReservationResponse toReservationResponse(Reservation reservation) {
+        return new ReservationResponse(
+                reservation.getBook().getId(),
+                reservation.getStatus(),
+                positionOf(reservation),
+                reservation.getOfferExpiresAt()
+        );
+    }
+
+    // 1-based, 0 when the reservation is not waiting (offered...)
+    private int positionOf(Reservation reservation) {
+        if(reservation.getStatus() != ReservationStatus.WAITING) {
+            return 0;
+        }
+        return (int) reservationRepository.countWaitingAhead(
+                reservation.getBook().getId(),
+                reservation.getCreatedDate(),
+                reservation.getId()
+        ) + 1;
+    }
+
+    private boolean isQueueCacheUsed() {
+        return !"advisory".equals(lockMode);
+    }
+
+    // the in-memory queues only follow committed changes
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package com.victor.bookish.reservation;
+
+public enum ReservationStatus {
+    // in the queue of the book
+    WAITING,
+    // head of the queue when the book came back: the book is held for the user until offerExpiresAt
+    OFFERED,
+    // the user borrowed the book that was held for them
+    CLAIMED,
+    // the offer was not claimed in time, the book went to the next user
+    EXPIRED,
+    CANCELLED
+}
@@ -0,0 +1,269 @@
+package com.victor.bookish.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory inverted index over title, author, ISBN and synopsis, ranked with BM25.
+// Kept in sync by BookService and rebuilt at startup by BookSearchIndexLoader.
+@Component
+public class BookSearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // a match in the title counts as much as three in the synopsis
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float AUTHOR_WEIGHT = 2f;
+    private static final float ISBN_WEIGHT = 3f;
+    private static final float SYNOPSIS_WEIGHT = 1f;
+
+    private static final double PREFIX_BOOST = 0.8;
+    private static final double FUZZY_BOOST = 0.5;
+    private static final int MAX_EXPANSIONS = 50;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, Document> documents = new HashMap<>();
+    // term -> (book id -> weighted term frequency), sorted for the prefix lookups
+    private final TreeMap<String, Map<Integer, Float>> postings = new TreeMap<>();
+    private double totalLength;
+
+    public void index(IndexedBook book) {
+        Map<String, Float> termWeights = new HashMap<>();
+        addTerms(termWeights, book.title(), TITLE_WEIGHT);
+        addTerms(termWeights, book.authorName(), AUTHOR_WEIGHT);
+        addTerms(termWeights, book.synopsis(), SYNOPSIS_WEIGHT);
+
+        List<String> isbnTokens = SearchTokenizer.tokenize(book.isbn());
+        isbnTokens.forEach(token -> termWeights.merge(token, ISBN_WEIGHT, Float::sum));
+        if(isbnTokens.size() > 1) {
+            // 978-3-16-148410-0 is also searchable as 9783161484100
+            termWeights.merge(String.join("", isbnTokens), ISBN_WEIGHT, Float::sum);
+        }
+
+        float length = 0;
+        for (float weight : termWeights.values()) {
+            length += weight;
+        }
+        Document document = new Document(book, termWeights, length);
+
+        lock.writeLock().lock();
+        try {
+            removeDocument(book.id());
+            documents.put(book.id(), document);
+            termWeights.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(book.id(), weight));
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer bookId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addRating(Integer bookId, double note) {
+        lock.writeLock().lock();
+        try {
+            Document document = documents.get(bookId);
+            if(document != null) {
+                documents.put(bookId, new Document(
+                        document.book().withRating(note),
+                        document.termWeights(),
+                        document.length()
+                ));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // only the books displayable to the user (see IndexedBook.isDisplayableTo) are returned
+    public SearchResult search(String query, Integer userId, int offset, int limit) {
+        List<String> queryTokens = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(query)));
+        if(queryTokens.isEmpty()) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            if(documents.isEmpty()) {
+                return new SearchResult(List.of(), 0);
+            }
+            double averageLength = totalLength / documents.size();
+
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String token : queryTokens) {
+                // best expansion per book, so a prefix matching many terms is not over-counted
+                Map<Integer, Double> tokenScores = new HashMap<>();
+
+                Map<Integer, Float> exactMatches = postings.get(token);
+                if(exactMatches != null) {
+                    score(exactMatches, 1.0, averageLength, tokenScores);
+                }
+
+                int expansions = 0;
+                for (Map<Integer, Float> prefixMatches : postings
+                        .subMap(token, false, token + Character.MAX_VALUE, false)
+                        .values()) {
+                    if(++expansions > MAX_EXPANSIONS) {
+                        break;
+                    }
+                    score(prefixMatches, PREFIX_BOOST, averageLength, tokenScores);
+                }
+
+                if(exactMatches == null && token.length() >= 4) {
+                    fuzzyMatches(token).forEach(matches ->
+                            score(matches, FUZZY_BOOST, averageLength, tokenScores));
+                }
+
+                tokenScores.forEach((bookId, score) -> scores.merge(bookId, score, Double::sum));
+            }
+
+            List<Map.Entry<Integer, Double>> hits = scores.entrySet()
+                    .stream()
+                    .filter(hit -> documents.get(hit.getKey()).book().isDisplayableTo(userId))
+                    .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder()))
+                    .toList();
+
+            List<IndexedBook> books = hits.stream()
+                    .skip(offset)
+                    .limit(limit)
+                    .map(hit -> documents.get(hit.getKey()).book())
+                    .toList();
+
+            return new SearchResult(books, hits.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void score(
+            Map<Integer, Float> matches,
+            double boost,
+            double averageLength,
+            Map<Integer, Double> tokenScores
+    ) {
+        int documentFrequency = matches.size();
+        double idf = Math.log(1 + (documents.size() - documentFrequency + 0.5) / (documentFrequency + 0.5));
+
+        matches.forEach((bookId, termFrequency) -> {
+            double length = documents.get(bookId).length();
+            double score = boost * idf * (termFrequency * (K1 + 1)) /
+                    (termFrequency + K1 * (1 - B + B * length / averageLength));
+            tokenScores.merge(bookId, score, Math::max);
+        });
+    }
+
+    // terms starting with the same letter within 1 edit (2 for long words)
+    private List<Map<Integer, Float>> fuzzyMatches(String token) {
+        int maxEdits = token.length() >= 8 ? 2 : 1;
+        char first = token.charAt(0);
+
+        NavigableMap<String, Map<Integer, Float>> candidates = postings.subMap(
+                String.valueOf(first), true,
+                String.valueOf((char) (first + 1)), false
+        );
+
+        List<Map<Integer, Float>> matches = new ArrayList<>();
+        for (Map.Entry<String, Map<Integer, Float>> candidate : candidates.entrySet()) {
+            String term = candidate.getKey();
+            if(Math.abs(term.length() - token.length()) <= maxEdits
+                    && editDistance(token, term, maxEdits) <= maxEdits) {
+                matches.add(candidate.getValue());
+                if(matches.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Levenshtein distance, giving up as soon as it exceeds maxEdits
+    private static int editDistance(String a, String b, int maxEdits) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMinimum = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j] + 1, current[j - 1] + 1));
+                rowMinimum = Math.min(rowMinimum, current[j]);
+            }
+            if(rowMinimum > maxEdits) {
+                return rowMinimum;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private void removeDocument(Integer bookId) {
+        Document document = documents.remove(bookId);
+        if(document == null) {
+            return;
+        }
+        document.termWeights().keySet().forEach(term -> {
+            Map<Integer, Float> matches = postings.get(term);
+            if(matches != null) {
+                matches.remove(bookId);
+                if(matches.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        });
+        totalLength -= document.length();
+    }
+
+    private static void addTerms(Map<String, Float> termWeights, String text, float weight) {
+        SearchTokenizer.tokenize(text).forEach(token -> termWeights.merge(token, weight, Float::sum));
+    }
+
+    private record Document(IndexedBook book, Map<String, Float> termWeights, float length) {
+    }
+
+    public record SearchResult(List<IndexedBook> books, int totalHits) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.victor.bookish.search;
+
+import com.victor.bookish.book.BookRepository;
+import com.victor.bookish.book.BookSummary;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Builds the in-memory search index and suggestion trie from the book table once the application is up
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class BookSearchIndexLoader {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final BookRepository bookRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggestionTrie bookSuggestionTrie;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        bookSearchIndex.clear();
+        bookSuggestionTrie.clear();
+
+        int lastId = 0;
+        List<BookSummary> batch;
+        do {
+            batch = bookRepository.findSummariesAfterId(lastId, PageRequest.ofSize(BATCH_SIZE));
+            for (BookSummary bookSummary : batch) {
+                IndexedBook indexedBook = IndexedBook.of(bookSummary);
+                bookSearchIndex.index(indexedBook);
+                bookSuggestionTrie.index(indexedBook);
+                lastId = bookSummary.id();
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        log.info("Search index built with {} books in {} ms",
+                bookSearchIndex.size(), System.currentTimeMillis() - start);
+    }
+}
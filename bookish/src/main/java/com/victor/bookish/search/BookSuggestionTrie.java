@@ -0,0 +1,329 @@
+package com.victor.bookish.search;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Typeahead over titles and author names. Each trie node keeps the top-k suggestions of
+// its subtree by popularity (number of displayable books with that title/author), so a
+// lookup is a walk down the prefix and never a scan.
+// The trie is compressed (radix tree): a chain of single-child nodes is one edge labelled with
+// the whole run of characters, so there is a node (and a top-k array) per branching point or
+// entry, not per character of every word-start suffix
+@Component
+public class BookSuggestionTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Suggestion[] NO_SUGGESTIONS = new Suggestion[0];
+
+    @Value("${application.search.suggestions-per-node:10}")
+    private int suggestionsPerNode;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Node root = new Node("");
+    private final Map<String, Suggestion> suggestions = new HashMap<>();
+    // what each book currently contributes, so updates can take it back
+    private final Map<Integer, List<String>> bookEntries = new HashMap<>();
+
+    public void index(IndexedBook book) {
+        lock.writeLock().lock();
+        try {
+            removeBook(book.id());
+            if(!book.archived() && book.shareable()) {
+                List<String> entries = new ArrayList<>();
+                addEntry(book.title(), entries);
+                addEntry(book.authorName(), entries);
+                bookEntries.put(book.id(), entries);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer bookId) {
+        lock.writeLock().lock();
+        try {
+            removeBook(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root = new Node("");
+            suggestions.clear();
+            bookEntries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<String> suggest(String prefix, int limit) {
+        if(limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1: " + limit);
+        }
+        String key = toKey(prefix);
+        if(key.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = find(key);
+            if(node == null) {
+                return List.of();
+            }
+
+            // a title is reachable from several word positions, keep each text once
+            Set<String> texts = new LinkedHashSet<>();
+            for (Suggestion suggestion : node.top) {
+                if(texts.size() >= limit) {
+                    break;
+                }
+                texts.add(suggestion.text);
+            }
+            return List.copyOf(texts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addEntry(String text, List<String> entries) {
+        String key = toKey(text);
+        if(key.isEmpty()) {
+            return;
+        }
+        Suggestion suggestion = suggestions.computeIfAbsent(key, k -> new Suggestion(text.strip()));
+        suggestion.weight++;
+        entries.add(key);
+        forEachWordStart(key, suffix -> update(suffix, suggestion));
+    }
+
+    private void removeBook(Integer bookId) {
+        List<String> entries = bookEntries.remove(bookId);
+        if(entries == null) {
+            return;
+        }
+        for (String key : entries) {
+            Suggestion suggestion = suggestions.get(key);
+            if(suggestion == null) {
+                continue;
+            }
+            suggestion.weight--;
+            if(suggestion.weight <= 0) {
+                suggestions.remove(key);
+            }
+            forEachWordStart(key, suffix -> update(suffix, suggestion));
+        }
+    }
+
+    // "the hobbit" is reachable from "the hobbit" and from "hobbit"
+    private static void forEachWordStart(String key, Consumer<String> action) {
+        action.accept(key);
+        for (int i = key.indexOf(' '); i >= 0; i = key.indexOf(' ', i + 1)) {
+            action.accept(key.substring(i + 1));
+        }
+    }
+
+    // the node whose subtree holds every key starting with the prefix: the prefix can end in the
+    // middle of the label of its edge
+    private Node find(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            Node child = node.child(prefix.charAt(i));
+            if(child == null) {
+                return null;
+            }
+            int common = commonPrefix(child.label, prefix, i);
+            if(i + common == prefix.length()) {
+                return child;
+            }
+            if(common < child.label.length()) {
+                return null;
+            }
+            node = child;
+            i += common;
+        }
+        return node;
+    }
+
+    // adds the suggestion to the entries ending at the path (splitting an edge when the path ends or forks inside it),
+    // drops the nodes left without entries, then recomputes the top-k lists bottom-up along it
+    private void update(String path, Suggestion suggestion) {
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(root);
+        Node node = root;
+        int i = 0;
+        while (i < path.length()) {
+            Node child = node.child(path.charAt(i));
+            if(child == null) {
+                child = new Node(path.substring(i));
+                node.putChild(child);
+                i = path.length();
+            } else {
+                int common = commonPrefix(child.label, path, i);
+                if(common < child.label.length()) {
+                    Node middle = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.putChild(child);
+                    node.putChild(middle);
+                    child = middle;
+                }
+                i += common;
+            }
+            nodes.add(child);
+            node = child;
+        }
+
+        if(suggestion.weight > 0) {
+            node.addEntry(suggestion);
+        } else {
+            node.removeEntry(suggestion);
+        }
+
+        for (int j = nodes.size() - 1; j > 0; j--) {
+            compact(nodes.get(j - 1), nodes.get(j));
+        }
+        for (int j = nodes.size() - 1; j >= 0; j--) {
+            nodes.get(j).top = topOf(nodes.get(j));
+        }
+    }
+
+    // a node without a suggestion goes away when it has no child, and is merged into its only child
+    private static void compact(Node parent, Node node) {
+        if(node.entries.length > 0 || parent.child(node.label.charAt(0)) != node) {
+            return;
+        }
+        if(node.children.length == 0) {
+            parent.removeChild(node);
+        } else if(node.children.length == 1) {
+            Node child = node.children[0];
+            child.label = node.label + child.label;
+            parent.putChild(child);
+        }
+    }
+
+    private static int commonPrefix(String label, String key, int from) {
+        int length = 0;
+        while (length < label.length()
+                && from + length < key.length()
+                && label.charAt(length) == key.charAt(from + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private Suggestion[] topOf(Node node) {
+        List<Suggestion> candidates = new ArrayList<>();
+        candidates.addAll(Arrays.asList(node.entries));
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        return candidates.stream()
+                .distinct()
+                .sorted((a, b) -> Integer.compare(b.weight, a.weight))
+                .limit(suggestionsPerNode)
+                .toArray(Suggestion[]::new);
+    }
+
+    private static String toKey(String text) {
+        return String.join(" ", SearchTokenizer.tokenize(text));
+    }
+
+    private static final class Suggestion {
+        private final String text;
+        private int weight;
+
+        private Suggestion(String text) {
+            this.text = text;
+        }
+    }
+
+    // children are kept in two parallel sorted arrays (by the first character of their label)
+    // rather than a map per node
+    private static final class Node {
+        // the characters of the edge from the parent, empty for the root only
+        private String label;
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private Suggestion[] top = NO_SUGGESTIONS;
+        // the suggestions ending here: "ho" and the "ho" word of "abc ho" share the node
+        private Suggestion[] entries = NO_SUGGESTIONS;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        // adds the child, or replaces the one starting with the same character
+        private void putChild(Node child) {
+            char key = child.label.charAt(0);
+            int index = Arrays.binarySearch(keys, key);
+            if(index >= 0) {
+                children[index] = child;
+                return;
+            }
+            int insertAt = -index - 1;
+
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = key;
+            newChildren[insertAt] = child;
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        private void addEntry(Suggestion suggestion) {
+            if(!Arrays.asList(entries).contains(suggestion)) {
+                entries = Arrays.copyOf(entries, entries.length + 1);
+                entries[entries.length - 1] = suggestion;
+            }
+        }
+
+        private void removeEntry(Suggestion suggestion) {
+            Suggestion[] kept = Arrays.stream(entries)
+                    .filter(entry -> entry != suggestion)
+                    .toArray(Suggestion[]::new);
+            entries = kept.length == 0 ? NO_SUGGESTIONS : kept;
+        }
+
+        private void removeChild(Node child) {
+            int index = Arrays.binarySearch(keys, child.label.charAt(0));
+            if(index < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+
+            keys = newKeys.length == 0 ? NO_KEYS : newKeys;
+            children = newChildren.length == 0 ? NO_CHILDREN : newChildren;
+        }
+    }
+}
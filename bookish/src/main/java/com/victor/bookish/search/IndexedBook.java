@@ -0,0 +1,73 @@
+package com.victor.bookish.search;
+
+import com.victor.bookish.book.Book;
+import com.victor.bookish.book.BookSummary;
+
+import java.util.Objects;
+
+// Snapshot of a book as kept in memory by the search index, enough to answer a
+// search without going to the database
+public record IndexedBook(
+        Integer id,
+        Integer ownerId,
+        String owner,
+        String title,
+        String authorName,
+        String isbn,
+        String synopsis,
+        String bookCover,
+        double ratingSum,
+        int ratingCount,
+        boolean archived,
+        boolean shareable
+) {
+
+    public static IndexedBook of(Book book) {
+        return of(book, book.getOwner().fullName());
+    }
+
+    // for a book whose owner is only a reference (not loaded), the name coming from elsewhere
+    public static IndexedBook of(Book book, String owner) {
+        return new IndexedBook(
+                book.getId(),
+                book.getOwner().getId(),
+                owner,
+                book.getTitle(),
+                book.getAuthorName(),
+                book.getIsbn(),
+                book.getSynopsis(),
+                book.getBookCover(),
+                book.getRatingSum(),
+                book.getRatingCount(),
+                book.isArchived(),
+                book.isShareable()
+        );
+    }
+
+    public static IndexedBook of(BookSummary bookSummary) {
+        return new IndexedBook(
+                bookSummary.id(),
+                bookSummary.ownerId(),
+                bookSummary.ownerFirstname() + " " + bookSummary.ownerLastname(),
+                bookSummary.title(),
+                bookSummary.authorName(),
+                bookSummary.isbn(),
+                bookSummary.synopsis(),
+                bookSummary.bookCover(),
+                bookSummary.ratingSum(),
+                bookSummary.ratingCount(),
+                bookSummary.archived(),
+                bookSummary.shareable()
+        );
+    }
+
+    // same rules as BookRepository.findAllDisplayableBooks
+    public boolean isDisplayableTo(Integer userId) {
+        return !archived && shareable && !Objects.equals(ownerId, userId);
+    }
+
+    public IndexedBook withRating(double note) {
+        return new IndexedBook(id, ownerId, owner, title, authorName, isbn, synopsis, bookCover,
+                ratingSum + note, ratingCount + 1, archived, shareable);
+    }
+}
@@ -1,5 +1,6 @@
 package com.victor.bookish.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -10,7 +11,6 @@ import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -22,7 +22,9 @@ import java.io.IOException;
 public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
+    private final JwtVerifier jwtVerifier;
+    private final PrincipalResolver principalResolver;
+    private final TokenRevocationService tokenRevocationService;
 
 
     @Override
@@ -52,14 +54,21 @@ public class JwtFilter extends OncePerRequestFilter {
 
         jwtToken = authHeader.substring(7);
 
-        userEmail = jwtService.extractUsername(jwtToken);
+        // parsed and verified once for the whole request
+        final Claims claims = jwtVerifier.verify(jwtToken);
 
+        userEmail = claims.getSubject();
+
+        // the Bloom filter answers for most tokens, see TokenRevocationService
         if(userEmail != null &&
-                SecurityContextHolder.getContext().getAuthentication() == null)
+                SecurityContextHolder.getContext().getAuthentication() == null &&
+                !tokenRevocationService.isRevoked(claims))
 
         {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
-            if(jwtService.isTokenValid(jwtToken, userDetails)) {
+            UserDetails userDetails = principalResolver.resolve(claims);
+            if(jwtService.isTokenValid(claims, userDetails)
+                    && userDetails.isEnabled()
+                    && userDetails.isAccountNonLocked()) {
 
                 // used by Spring to update Spring Security Context Holder
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
@@ -0,0 +1,100 @@
+package com.victor.bookish.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.victor.bookish.exception.TooManyAttemptsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+// Token buckets per account (email) and per client IP, checked before any password is hashed:
+// credential stuffing on an account, or from an address, is refused without costing a BCrypt.
+// The buckets are per instance and forgotten once full again (idle for a whole refill)
+@Component
+public class LoginRateLimiter {
+
+    private final Cache<String, TokenBucket> buckets;
+    private final int accountCapacity;
+    private final Duration accountRefill;
+    private final int ipCapacity;
+    private final Duration ipRefill;
+    private final MeterRegistry meterRegistry;
+
+    public LoginRateLimiter(
+            // 5 attempts at once, then one every 12 seconds
+            @Value("${application.security.login-limit.account.capacity:5}") int accountCapacity,
+            @Value("${application.security.login-limit.account.refill:12s}") Duration accountRefill,
+            @Value("${application.security.login-limit.ip.capacity:20}") int ipCapacity,
+            @Value("${application.security.login-limit.ip.refill:3s}") Duration ipRefill,
+            @Value("${application.security.login-limit.max-buckets:100000}") long maxBuckets,
+            MeterRegistry meterRegistry
+    ) {
+        this.accountCapacity = accountCapacity;
+        this.accountRefill = accountRefill;
+        this.ipCapacity = ipCapacity;
+        this.ipRefill = ipRefill;
+        this.meterRegistry = meterRegistry;
+        Duration idle = max(accountRefill.multipliedBy(accountCapacity), ipRefill.multipliedBy(ipCapacity));
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idle)
+                .build();
+    }
+
+    // the account is only taken from the bucket when the address was allowed
+    public void acquire(String email, String clientIp) {
+        acquire("ip", "ip:" + clientIp, ipCapacity, ipRefill);
+        acquire("account", "account:" + email.toLowerCase(Locale.ROOT), accountCapacity, accountRefill);
+    }
+
+    // registrations hash a password too, they only have an address to count against
+    public void acquireForIp(String clientIp) {
+        acquire("ip", "ip:" + clientIp, ipCapacity, ipRefill);
+    }
+
+    private void acquire(String scope, String key, int capacity, Duration refill) {
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(capacity, refill.toNanos()));
+        long waitNanos = bucket.tryConsume();
+        if(waitNanos > 0) {
+            meterRegistry.counter("login.rate-limited", "scope", scope).increment();
+            throw new TooManyAttemptsException(
+                    "Too many attempts, please retry later",
+                    Duration.ofNanos(waitNanos)
+            );
+        }
+    }
+
+    private static Duration max(Duration first, Duration second) {
+        return first.compareTo(second) >= 0 ? first : second;
+    }
+
+    private static class TokenBucket {
+
+        private final int capacity;
+        private final long refillNanos; // time to get one token back
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(int capacity, long refillNanos) {
+            this.capacity = capacity;
+            this.refillNanos = refillNanos;
+            this.tokens = capacity;
+            this.refilledAt = System.nanoTime();
+        }
+
+        // 0 when a token was taken, otherwise the time until the next one
+        synchronized long tryConsume() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (double) (now - refilledAt) / refillNanos);
+            refilledAt = now;
+            if(tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return (long) ((1 - tokens) * refillNanos);
+        }
+    }
+}
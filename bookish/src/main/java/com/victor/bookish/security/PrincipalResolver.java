@@ -0,0 +1,54 @@
+package com.victor.bookish.security;
+
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// The principal of a request, from the verified claims of its token, see PrincipalSource
+@Component
+@RequiredArgsConstructor
+public class PrincipalResolver {
+
+    private final UserDetailsService userDetailsService;
+    private final UserCache userCache;
+
+    @Value("${application.security.principal-source:CLAIMS}")
+    private PrincipalSource principalSource;
+
+    public UserDetails resolve(Claims claims) {
+        return switch (principalSource) {
+            case CLAIMS -> fromClaims(claims);
+            case CACHED -> userCache.get(claims.getSubject());
+            case DATABASE -> userDetailsService.loadUserByUsername(claims.getSubject());
+        };
+    }
+
+    private UserDetails fromClaims(Claims claims) {
+        Integer userId = claims.get(JwtService.USER_ID_CLAIM, Integer.class);
+        if(userId == null) {
+            // token issued before the claim existed
+            return userCache.get(claims.getSubject());
+        }
+
+        List<?> authorities = claims.get(JwtService.AUTHORITIES_CLAIM, List.class);
+        List<GrantedAuthority> grantedAuthorities = authorities == null
+                ? List.of()
+                : authorities.stream()
+                        .map(authority -> (GrantedAuthority) new SimpleGrantedAuthority(authority.toString()))
+                        .toList();
+
+        return new TokenUser(
+                userId,
+                claims.getSubject(),
+                claims.get(JwtService.FULL_NAME_CLAIM, String.class),
+                grantedAuthorities
+        );
+    }
+}
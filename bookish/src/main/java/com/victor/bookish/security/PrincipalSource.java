@@ -0,0 +1,12 @@
+package com.victor.bookish.security;
+
+// Where JwtFilter gets the principal of a request from (application.security.principal-source)
+public enum PrincipalSource {
+    // the claims of the token (TokenUser): no database access at all
+    CLAIMS,
+    // the User entity, kept a short time in UserCache: one query per user and TTL,
+    // a locked or disabled account is refused as soon as its entry is evicted
+    CACHED,
+    // the User entity, loaded on every request
+    DATABASE
+}
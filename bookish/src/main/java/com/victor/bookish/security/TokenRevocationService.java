@@ -0,0 +1,189 @@
+package com.victor.bookish.security;
+
+import com.victor.bookish.user.RevokedToken;
+import com.victor.bookish.user.RevokedTokenRepository;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Revokes JWTs before their expiration: one token (logout) or all the tokens of a user issued
+// until now (password change, account locked or disabled, see UserAccessRevocation).
+// The revocations are persisted in RevokedToken, and every token key of the table is also put in an
+// in-memory Bloom filter checked by JwtFilter on each request: a token that was never revoked is
+// told apart in a few hashes, only the positives of the filter (revoked or false) read the table.
+// The user revocations are few, they are kept in memory with their revokedAt: the tokens issued
+// after it (all of them once the user logged in again) don't read the table for the whole life
+// of the revocation. Each instance gets its own revocations at once, the ones of the other
+// instances when it polls the table, and rebuilds both from scratch now and then to drop the
+// expired keys
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TokenRevocationService {
+
+    private static final String TOKEN_KEY = "jti:";
+    private static final String USER_KEY = "user:";
+
+    // a revocation committed a bit after its revokedAt is still picked by the next poll
+    private static final Duration POLL_OVERLAP = Duration.ofSeconds(30);
+
+    private static final String UPSERT = """
+            INSERT INTO revoked_token (revocation_key, revoked_at, expires_at)
+            VALUES (?, ?, ?)
+            ON CONFLICT (revocation_key) DO UPDATE
+            SET revoked_at = EXCLUDED.revoked_at,
+                expires_at = EXCLUDED.expires_at
+            """;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${application.security.jwt.expiration}")
+    private long jwtExpiration;
+
+    // sizing of the filter, it is rebuilt bigger when the table holds more keys
+    @Value("${application.security.revocation.expected-insertions:100000}")
+    private int expectedInsertions;
+
+    @Value("${application.security.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter revokedKeys;
+    // email -> revokedAt of the "user:" revocations
+    private volatile Map<String, LocalDateTime> userRevocations;
+    private volatile LocalDateTime polledUntil;
+    private Counter revokedLookups;
+    private Counter falsePositives;
+
+    // loaded before the server takes requests
+    @PostConstruct
+    void init() {
+        revokedLookups = Counter.builder("security.revocation.lookups")
+                .tag("result", "revoked")
+                .description("Tokens found in the denylist")
+                .register(meterRegistry);
+        falsePositives = Counter.builder("security.revocation.lookups")
+                .tag("result", "false_positive")
+                .description("Positives of the Bloom filter not in the denylist")
+                .register(meterRegistry);
+        rebuild();
+    }
+
+    public boolean isRevoked(Claims claims) {
+        BloomFilter filter = revokedKeys;
+        String tokenKey = claims.getId() != null ? TOKEN_KEY + claims.getId() : null;
+        String userKey = USER_KEY + claims.getSubject();
+
+        boolean tokenPositive = tokenKey != null && filter.mightContain(tokenKey);
+        LocalDateTime userRevokedAt = userRevocations.get(claims.getSubject());
+        boolean userPositive = userRevokedAt != null && issuedBefore(claims, userRevokedAt);
+        if(!tokenPositive && !userPositive) {
+            return false;
+        }
+
+        // the user revocation is checked in the table too, the one in memory may have been rolled back
+        boolean revoked = (tokenPositive && revokedTokenRepository.existsById(tokenKey))
+                || (userPositive && revokedTokenRepository.findById(userKey)
+                        .map(revocation -> issuedBefore(claims, revocation.getRevokedAt()))
+                        .orElse(false));
+        (revoked ? revokedLookups : falsePositives).increment();
+        return revoked;
+    }
+
+    // until the token expires
+    public void revoke(Claims claims) {
+        if(claims.getId() == null) {
+            // issued before the tokens had an id: they can only be revoked with the others of the user
+            revokeAllTokens(claims.getSubject());
+            return;
+        }
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault());
+        save(TOKEN_KEY + claims.getId(), LocalDateTime.now(), expiresAt);
+    }
+
+    // The tokens of the user issued until now. The iat claim is in seconds: revokedAt is truncated
+    // the same way, a token issued in the second of the revocation stays valid (a login right after
+    // a password change must work)
+    public void revokeAllTokens(String email) {
+        LocalDateTime revokedAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        save(USER_KEY + email, revokedAt, revokedAt.plus(Duration.ofMillis(jwtExpiration)));
+    }
+
+    // In the transaction of the caller when there is one. The key is kept in memory right away,
+    // if the transaction rolls back it is only a false positive until the next rebuild
+    private void save(String key, LocalDateTime revokedAt, LocalDateTime expiresAt) {
+        jdbcTemplate.update(UPSERT, key, Timestamp.valueOf(revokedAt), Timestamp.valueOf(expiresAt));
+        remember(key, revokedAt, revokedKeys, userRevocations);
+    }
+
+    // the revocations of the other instances
+    @Scheduled(
+            fixedDelayString = "${application.security.revocation.poll-ms:5000}",
+            initialDelayString = "${application.security.revocation.poll-ms:5000}"
+    )
+    public void poll() {
+        LocalDateTime now = LocalDateTime.now();
+        List<RevokedToken> revocations = revokedTokenRepository.findRevokedSince(polledUntil.minus(POLL_OVERLAP));
+        BloomFilter filter = revokedKeys;
+        Map<String, LocalDateTime> users = userRevocations;
+        revocations.forEach(revocation -> remember(revocation.getRevocationKey(), revocation.getRevokedAt(), filter, users));
+        polledUntil = now;
+    }
+
+    // drops the expired revocations, from the table and the memory
+    @Scheduled(
+            fixedDelayString = "${application.security.revocation.rebuild-ms:3600000}",
+            initialDelayString = "${application.security.revocation.rebuild-ms:3600000}"
+    )
+    public void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        int purged = revokedTokenRepository.deleteExpired(now);
+        List<RevokedToken> revocations = revokedTokenRepository.findActive(now);
+
+        BloomFilter filter = new BloomFilter(Math.max(expectedInsertions, revocations.size() * 2), falsePositiveRate);
+        Map<String, LocalDateTime> users = new ConcurrentHashMap<>();
+        revocations.forEach(revocation -> remember(revocation.getRevocationKey(), revocation.getRevokedAt(), filter, users));
+        revokedKeys = filter;
+        userRevocations = users;
+
+        // the revocations made while the keys were read went to the previous filter and map
+        polledUntil = now;
+        poll();
+
+        log.info("Token revocation filter rebuilt with {} token key(s) and {} user(s), {} expired purged",
+                revocations.size() - users.size(), users.size(), purged);
+    }
+
+    // the latest revocation of a user wins, a poll may bring back an older one
+    private static void remember(String key, LocalDateTime revokedAt, BloomFilter filter,
+                                 Map<String, LocalDateTime> users) {
+        if(key.startsWith(USER_KEY)) {
+            users.merge(key.substring(USER_KEY.length()), revokedAt,
+                    (current, other) -> current.isAfter(other) ? current : other);
+        } else {
+            filter.put(key);
+        }
+    }
+
+    private static boolean issuedBefore(Claims claims, LocalDateTime revokedAt) {
+        return claims.getIssuedAt() != null && claims.getIssuedAt().toInstant()
+                .isBefore(revokedAt.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,62 @@
+package com.victor.bookish.security;
+
+import com.victor.bookish.user.UserPrincipal;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.security.Principal;
+import java.util.List;
+
+// Principal built from the verified claims of the token alone, no database access.
+// Locked or disabled accounts are only seen once the token expires, see PrincipalSource
+@Getter
+@AllArgsConstructor
+public class TokenUser implements UserDetails, UserPrincipal, Principal {
+
+    private final Integer id;
+    private final String email;
+    private final String fullName;
+    private final List<GrantedAuthority> authorities;
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    @Override
+    public String fullName() {
+        return fullName;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
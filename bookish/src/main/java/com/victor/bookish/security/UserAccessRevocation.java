@@ -0,0 +1,24 @@
+package com.victor.bookish.security;
+
+import com.victor.bookish.user.User;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+// JPA listener of User: a new password, or an account locked or disabled, revokes the tokens
+// already issued to the user. Written in the transaction of the update, see UserCacheEviction
+// for the lazy lookup
+@Component
+@RequiredArgsConstructor
+public class UserAccessRevocation {
+
+    private final ObjectProvider<TokenRevocationService> tokenRevocationService;
+
+    @PostUpdate
+    void revoke(User user) {
+        if(user.isAccessRevoked()) {
+            tokenRevocationService.ifAvailable(service -> service.revokeAllTokens(user.getEmail()));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.victor.bookish.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.victor.bookish.user.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// The users of PrincipalSource.CACHED by email. An entry is evicted when its user is updated
+// (UserCacheEviction), the TTL bounds how long an update made by another instance goes unseen
+@Component
+@RequiredArgsConstructor
+public class UserCache {
+
+    private final UserDetailsService userDetailsService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${application.security.user-cache.ttl:1m}")
+    private Duration ttl;
+
+    @Value("${application.security.user-cache.max-size:10000}")
+    private long maxSize;
+
+    private Cache<String, User> users;
+
+    @PostConstruct
+    void init() {
+        users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "security.users");
+    }
+
+    public User get(String email) {
+        return users.get(email, key -> (User) userDetailsService.loadUserByUsername(key));
+    }
+
+    public void evict(String email) {
+        users.invalidate(email);
+    }
+}
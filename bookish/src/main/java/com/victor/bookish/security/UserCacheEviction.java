@@ -0,0 +1,24 @@
+package com.victor.bookish.security;
+
+import com.victor.bookish.user.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+// JPA listener of User (a Spring bean, see the Hibernate bean container): locking, disabling or
+// any other change of a user drops its cached entry, the next request loads it again.
+// The cache is looked up lazily: it depends on the repositories, which wait for this listener
+@Component
+@RequiredArgsConstructor
+public class UserCacheEviction {
+
+    private final ObjectProvider<UserCache> userCache;
+
+    @PostUpdate
+    @PostRemove
+    void evict(User user) {
+        userCache.ifAvailable(cache -> cache.evict(user.getEmail()));
+    }
+}
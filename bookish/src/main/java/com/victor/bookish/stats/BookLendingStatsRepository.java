@@ -0,0 +1,18 @@
+package com.victor.bookish.stats;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface BookLendingStatsRepository extends JpaRepository<BookLendingStats, Integer> {
+
+    @Query("""
+            SELECT new com.victor.bookish.stats.RankedCount(stats.bookId, stats.borrowCount)
+            FROM BookLendingStats stats
+            WHERE stats.borrowCount > 0
+            ORDER BY stats.borrowCount DESC, stats.bookId
+            """)
+    List<RankedCount> findMostBorrowedBooks(Pageable pageable);
+}
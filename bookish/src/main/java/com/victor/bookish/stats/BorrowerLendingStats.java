@@ -0,0 +1,24 @@
+package com.victor.bookish.stats;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// loans per borrowing user
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        // top-k reload
+        @Index(name = "idx_borrower_lending_stats_borrow_count", columnList = "borrowCount")
+})
+public class BorrowerLendingStats extends LendingCounters {
+
+    @Id
+    private Integer borrowerId;
+}
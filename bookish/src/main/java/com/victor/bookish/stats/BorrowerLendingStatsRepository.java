@@ -0,0 +1,18 @@
+package com.victor.bookish.stats;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface BorrowerLendingStatsRepository extends JpaRepository<BorrowerLendingStats, Integer> {
+
+    @Query("""
+            SELECT new com.victor.bookish.stats.RankedCount(stats.borrowerId, stats.borrowCount)
+            FROM BorrowerLendingStats stats
+            WHERE stats.borrowCount > 0
+            ORDER BY stats.borrowCount DESC, stats.borrowerId
+            """)
+    List<RankedCount> findMostActiveBorrowers(Pageable pageable);
+}
@@ -0,0 +1,11 @@
+package com.victor.bookish.stats;
+
+import java.time.LocalDate;
+
+public record DailyLendingCounts(
+        LocalDate day,
+        long borrowCount,
+        long returnCount,
+        long approvedCount
+) {
+}
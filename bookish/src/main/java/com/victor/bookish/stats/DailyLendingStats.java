@@ -0,0 +1,30 @@
+package com.victor.bookish.stats;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+// daily rollup of the loans of a book, the day being the one of the borrow/return/approval
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity
+@IdClass(DailyLendingStatsId.class)
+@Table(indexes = {
+        @Index(name = "idx_daily_lending_stats_book_id", columnList = "bookId")
+})
+public class DailyLendingStats extends LendingCounters {
+
+    @Id
+    private LocalDate day;
+
+    @Id
+    private Integer bookId;
+}
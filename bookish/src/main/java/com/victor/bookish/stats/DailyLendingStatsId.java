@@ -0,0 +1,19 @@
+package com.victor.bookish.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+public class DailyLendingStatsId implements Serializable {
+
+    private LocalDate day;
+    private Integer bookId;
+}
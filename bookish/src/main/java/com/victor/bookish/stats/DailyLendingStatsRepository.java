@@ -0,0 +1,33 @@
+package com.victor.bookish.stats;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyLendingStatsRepository extends JpaRepository<DailyLendingStats, DailyLendingStatsId> {
+
+    // the (day, bookId) primary key serves the range
+    @Query("""
+            SELECT new com.victor.bookish.stats.DailyLendingCounts(
+                stats.day, SUM(stats.borrowCount), SUM(stats.returnCount), SUM(stats.approvedCount))
+            FROM DailyLendingStats stats
+            WHERE stats.day BETWEEN :from AND :to
+            GROUP BY stats.day
+            ORDER BY stats.day
+            """)
+    List<DailyLendingCounts> sumByDay(LocalDate from, LocalDate to);
+
+    @Query("""
+            SELECT new com.victor.bookish.stats.DailyLendingCounts(
+                stats.day, SUM(stats.borrowCount), SUM(stats.returnCount), SUM(stats.approvedCount))
+            FROM DailyLendingStats stats
+            JOIN Book book ON book.id = stats.bookId
+            WHERE book.owner.id = :ownerId
+            AND stats.day BETWEEN :from AND :to
+            GROUP BY stats.day
+            ORDER BY stats.day
+            """)
+    List<DailyLendingCounts> sumByDayForOwner(Integer ownerId, LocalDate from, LocalDate to);
+}
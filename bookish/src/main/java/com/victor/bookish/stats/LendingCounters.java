@@ -0,0 +1,23 @@
+package com.victor.bookish.stats;
+
+import jakarta.persistence.MappedSuperclass;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+// The counters of a stats row. Incremented by LendingStats (the UPSERTs only set one column,
+// hence the defaults) and checked every night by LendingStatsReconciliationJob
+@Getter
+@Setter
+@MappedSuperclass
+public abstract class LendingCounters {
+
+    @ColumnDefault("0")
+    private long borrowCount;
+
+    @ColumnDefault("0")
+    private long returnCount;
+
+    @ColumnDefault("0")
+    private long approvedCount;
+}
@@ -0,0 +1,18 @@
+package com.victor.bookish.stats;
+
+public record LendingCounts(
+        long borrowCount,
+        long returnCount,
+        long approvedCount
+) {
+
+    public static final LendingCounts NONE = new LendingCounts(0, 0, 0);
+
+    public static LendingCounts of(LendingCounters counters) {
+        return new LendingCounts(
+                counters.getBorrowCount(),
+                counters.getReturnCount(),
+                counters.getApprovedCount()
+        );
+    }
+}
@@ -0,0 +1,78 @@
+package com.victor.bookish.stats;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// In-memory top-k of the most borrowed books, the most active borrowers and the owners who lend
+// the most. Kept up to date by LendingStats after each commit, reloaded from the counter tables
+// at startup and every few minutes for the loans recorded by the other instances
+@Component
+@RequiredArgsConstructor
+public class LendingLeaderboards {
+
+    private final BookLendingStatsRepository bookLendingStatsRepository;
+    private final BorrowerLendingStatsRepository borrowerLendingStatsRepository;
+    private final OwnerLendingStatsRepository ownerLendingStatsRepository;
+
+    @Value("${application.stats.top-k:100}")
+    private int k;
+
+    private TopK books;
+    private TopK borrowers;
+    private TopK owners;
+
+    @PostConstruct
+    void init() {
+        books = new TopK(k);
+        borrowers = new TopK(k);
+        owners = new TopK(k);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(
+            fixedDelayString = "${application.stats.top-k-refresh-ms:300000}",
+            initialDelayString = "${application.stats.top-k-refresh-ms:300000}"
+    )
+    public void reload() {
+        PageRequest top = PageRequest.ofSize(k);
+        books.reset(bookLendingStatsRepository.findMostBorrowedBooks(top));
+        borrowers.reset(borrowerLendingStatsRepository.findMostActiveBorrowers(top));
+        owners.reset(ownerLendingStatsRepository.findTopLenders(top));
+    }
+
+    public int size() {
+        return k;
+    }
+
+    void offerBooks(List<RankedCount> counts) {
+        counts.forEach(count -> books.offer(count.id(), count.count()));
+    }
+
+    void offerBorrowers(List<RankedCount> counts) {
+        counts.forEach(count -> borrowers.offer(count.id(), count.count()));
+    }
+
+    void offerOwners(List<RankedCount> counts) {
+        counts.forEach(count -> owners.offer(count.id(), count.count()));
+    }
+
+    public List<RankedCount> mostBorrowedBooks(int limit) {
+        return books.top(limit);
+    }
+
+    public List<RankedCount> mostActiveBorrowers(int limit) {
+        return borrowers.top(limit);
+    }
+
+    public List<RankedCount> topLenders(int limit) {
+        return owners.top(limit);
+    }
+}
@@ -0,0 +1,149 @@
+package com.victor.bookish.stats;
+
+import com.victor.bookish.ledger.LendingEventType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Increments the lending counters, one UPSERT per counter row instead of GROUP BYs over the history
+// when the stats are read. The book, borrower and daily counters are updated in the transaction of
+// the borrow/return/approval, their rows locked in a fixed order (books, borrowers, days, each by id)
+// so two transactions recording loans cannot deadlock on them.
+// An owner row is shared by all the books of the owner, so it is only updated once the loan has
+// committed, one short transaction per book: the loans of an owner's books don't wait on each other.
+// An owner increment lost in between (crash, failure) is fixed by LendingStatsReconciliationJob
+@Service
+@Slf4j
+public class LendingStats {
+
+    private static final String OWNER_UPSERT = """
+            INSERT INTO owner_lending_stats AS stats (owner_id, %1$s)
+            SELECT book.owner_id, ? FROM book WHERE book.id = ?
+            ON CONFLICT (owner_id) DO UPDATE SET %1$s = stats.%1$s + EXCLUDED.%1$s
+            RETURNING stats.owner_id, stats.borrow_count
+            """;
+
+    private static final String BOOK_UPSERT = """
+            INSERT INTO book_lending_stats AS stats (book_id, %1$s)
+            VALUES (?, ?)
+            ON CONFLICT (book_id) DO UPDATE SET %1$s = stats.%1$s + EXCLUDED.%1$s
+            RETURNING stats.book_id, stats.borrow_count
+            """;
+
+    private static final String BORROWER_UPSERT = """
+            INSERT INTO borrower_lending_stats AS stats (borrower_id, %1$s)
+            VALUES (?, ?)
+            ON CONFLICT (borrower_id) DO UPDATE SET %1$s = stats.%1$s + EXCLUDED.%1$s
+            RETURNING stats.borrower_id, stats.borrow_count
+            """;
+
+    private static final String DAILY_UPSERT = """
+            INSERT INTO daily_lending_stats AS stats (day, book_id, %1$s)
+            VALUES (?, ?, ?)
+            ON CONFLICT (day, book_id) DO UPDATE SET %1$s = stats.%1$s + EXCLUDED.%1$s
+            """;
+
+    private static final RowMapper<RankedCount> RANKED_COUNT =
+            (rs, rowNum) -> new RankedCount(rs.getInt(1), rs.getLong(2));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LendingLeaderboards lendingLeaderboards;
+    private final TransactionTemplate ownerTransaction;
+
+    public LendingStats(
+            JdbcTemplate jdbcTemplate,
+            LendingLeaderboards lendingLeaderboards,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lendingLeaderboards = lendingLeaderboards;
+        // after the commit, the resources of the loan transaction are still bound to the thread
+        this.ownerTransaction = new TransactionTemplate(transactionManager);
+        this.ownerTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void record(LendingEventType type, Integer bookId, Integer borrowerId) {
+        record(type, List.of(bookId), List.of(borrowerId));
+    }
+
+    // one book id and one borrower id per loan, duplicates are added up
+    public void record(LendingEventType type, List<Integer> bookIds, List<Integer> borrowerIds) {
+        String column = column(type);
+        Map<Integer, Long> books = count(bookIds);
+        Map<Integer, Long> borrowers = count(borrowerIds);
+        LocalDate today = LocalDate.now();
+
+        List<RankedCount> bookCounts = new ArrayList<>();
+        books.forEach((bookId, loans) ->
+                bookCounts.addAll(jdbcTemplate.query(BOOK_UPSERT.formatted(column), RANKED_COUNT, bookId, loans)));
+
+        List<RankedCount> borrowerCounts = new ArrayList<>();
+        borrowers.forEach((borrowerId, loans) ->
+                borrowerCounts.addAll(jdbcTemplate.query(BORROWER_UPSERT.formatted(column), RANKED_COUNT, borrowerId, loans)));
+
+        books.forEach((bookId, loans) ->
+                jdbcTemplate.update(DAILY_UPSERT.formatted(column), today, bookId, loans));
+
+        afterCommit(() -> {
+            List<RankedCount> owners = recordOwners(column, books);
+
+            // the top-k rank the loans, only a borrow moves them
+            if(type == LendingEventType.BORROWED) {
+                lendingLeaderboards.offerOwners(owners);
+                lendingLeaderboards.offerBooks(bookCounts);
+                lendingLeaderboards.offerBorrowers(borrowerCounts);
+            }
+        });
+    }
+
+    // the loans are committed: a failure here is only logged, the reconciliation catches up
+    private List<RankedCount> recordOwners(String column, Map<Integer, Long> books) {
+        List<RankedCount> owners = new ArrayList<>();
+        books.forEach((bookId, loans) -> {
+            try {
+                owners.addAll(ownerTransaction.execute(status ->
+                        jdbcTemplate.query(OWNER_UPSERT.formatted(column), RANKED_COUNT, loans, bookId)));
+            } catch (DataAccessException | TransactionException e) {
+                log.warn("Could not record {} loan(s) of book {} in the owner lending stats", loans, bookId, e);
+            }
+        });
+        return owners;
+    }
+
+    private static String column(LendingEventType type) {
+        return switch (type) {
+            case BORROWED -> "borrow_count";
+            case RETURNED -> "return_count";
+            case RETURN_APPROVED -> "approved_count";
+        };
+    }
+
+    private static Map<Integer, Long> count(List<Integer> ids) {
+        Map<Integer, Long> counts = new TreeMap<>();
+        ids.forEach(id -> counts.merge(id, 1L, Long::sum));
+        return counts;
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,18 @@
+package com.victor.bookish.stats;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface OwnerLendingStatsRepository extends JpaRepository<OwnerLendingStats, Integer> {
+
+    @Query("""
+            SELECT new com.victor.bookish.stats.RankedCount(stats.ownerId, stats.borrowCount)
+            FROM OwnerLendingStats stats
+            WHERE stats.borrowCount > 0
+            ORDER BY stats.borrowCount DESC, stats.ownerId
+            """)
+    List<RankedCount> findTopLenders(Pageable pageable);
+}
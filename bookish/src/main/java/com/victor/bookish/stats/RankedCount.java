@@ -0,0 +1,5 @@
+package com.victor.bookish.stats;
+
+// an entry of a top-k: a book, borrower or owner id and its number of loans
+public record RankedCount(Integer id, long count) {
+}
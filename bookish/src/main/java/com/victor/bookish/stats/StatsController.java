@@ -0,0 +1,72 @@
+package com.victor.bookish.stats;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("stats")
+@RequiredArgsConstructor
+@Tag(name = "Stats")
+public class StatsController {
+
+    private final StatsService statsService;
+
+    @GetMapping("/books/top")
+    public ResponseEntity<List<RankedCount>> findMostBorrowedBooks(
+            @RequestParam(name = "limit", defaultValue = "10", required = false) int limit
+    ) {
+        return ResponseEntity.ok(statsService.findMostBorrowedBooks(limit));
+    }
+
+    @GetMapping("/borrowers/top")
+    public ResponseEntity<List<RankedCount>> findMostActiveBorrowers(
+            @RequestParam(name = "limit", defaultValue = "10", required = false) int limit
+    ) {
+        return ResponseEntity.ok(statsService.findMostActiveBorrowers(limit));
+    }
+
+    @GetMapping("/owners/top")
+    public ResponseEntity<List<RankedCount>> findTopLenders(
+            @RequestParam(name = "limit", defaultValue = "10", required = false) int limit
+    ) {
+        return ResponseEntity.ok(statsService.findTopLenders(limit));
+    }
+
+    @GetMapping("/books/{book-id}")
+    public ResponseEntity<LendingCounts> findBookStats(
+            @PathVariable("book-id") Integer bookId
+    ) {
+        return ResponseEntity.ok(statsService.findBookStats(bookId));
+    }
+
+    @GetMapping("/me")
+    public ResponseEntity<UserStatsResponse> findUserStats(
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(statsService.findUserStats(connectedUser));
+    }
+
+    @GetMapping("/daily")
+    public ResponseEntity<List<DailyLendingCounts>> findDailyStats(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return ResponseEntity.ok(statsService.findDailyStats(from, to));
+    }
+
+    @GetMapping("/owner/daily")
+    public ResponseEntity<List<DailyLendingCounts>> findOwnerDailyStats(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication connectedUser
+    ) {
+        return ResponseEntity.ok(statsService.findOwnerDailyStats(from, to, connectedUser));
+    }
+}
@@ -0,0 +1,91 @@
+package com.victor.bookish.stats;
+
+import com.victor.bookish.exception.OperationNotPermittedException;
+import com.victor.bookish.user.UserPrincipal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+// Reads of the lending stats: the top-k from memory, the rest from the counter tables
+@Service
+@RequiredArgsConstructor
+public class StatsService {
+
+    private final LendingLeaderboards lendingLeaderboards;
+    private final BookLendingStatsRepository bookLendingStatsRepository;
+    private final BorrowerLendingStatsRepository borrowerLendingStatsRepository;
+    private final OwnerLendingStatsRepository ownerLendingStatsRepository;
+    private final DailyLendingStatsRepository dailyLendingStatsRepository;
+
+    @Value("${application.stats.max-days:366}")
+    private int maxDays;
+
+    public List<RankedCount> findMostBorrowedBooks(int limit) {
+        return lendingLeaderboards.mostBorrowedBooks(checkLimit(limit));
+    }
+
+    public List<RankedCount> findMostActiveBorrowers(int limit) {
+        return lendingLeaderboards.mostActiveBorrowers(checkLimit(limit));
+    }
+
+    public List<RankedCount> findTopLenders(int limit) {
+        return lendingLeaderboards.topLenders(checkLimit(limit));
+    }
+
+    public LendingCounts findBookStats(Integer bookId) {
+        return bookLendingStatsRepository.findById(bookId)
+                .map(LendingCounts::of)
+                .orElse(LendingCounts.NONE);
+    }
+
+    public UserStatsResponse findUserStats(Authentication connectedUser) {
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+
+        return new UserStatsResponse(
+                borrowerLendingStatsRepository.findById(user.getId())
+                        .map(LendingCounts::of)
+                        .orElse(LendingCounts.NONE),
+                ownerLendingStatsRepository.findById(user.getId())
+                        .map(LendingCounts::of)
+                        .orElse(LendingCounts.NONE)
+        );
+    }
+
+    public List<DailyLendingCounts> findDailyStats(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return dailyLendingStatsRepository.sumByDay(from, to);
+    }
+
+    // the loans of the books of the connected user
+    public List<DailyLendingCounts> findOwnerDailyStats(
+            LocalDate from,
+            LocalDate to,
+            Authentication connectedUser
+    ) {
+        checkRange(from, to);
+        UserPrincipal user = (UserPrincipal) connectedUser.getPrincipal();
+        return dailyLendingStatsRepository.sumByDayForOwner(user.getId(), from, to);
+    }
+
+    private int checkLimit(int limit) {
+        if(limit < 1 || limit > lendingLeaderboards.size()) {
+            throw new OperationNotPermittedException(
+                    "The limit must be between 1 and " + lendingLeaderboards.size()
+            );
+        }
+        return limit;
+    }
+
+    private void checkRange(LocalDate from, LocalDate to) {
+        if(from.isAfter(to) || ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new OperationNotPermittedException(
+                    "The range must go forward and cover at most " + maxDays + " days"
+            );
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.victor.bookish.stats;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// The k largest counts seen: a min-heap (the smallest of the top on its head, the one to evict)
+// and the entry of each id in it. Every increment offers the new exact count of its id, and counts
+// only grow, so an id out of the heap cannot pass one in it unseen
+class TopK {
+
+    private final int k;
+    private final PriorityQueue<RankedCount> heap =
+            new PriorityQueue<>(Comparator.comparingLong(RankedCount::count));
+    private final Map<Integer, RankedCount> entries = new HashMap<>();
+
+    TopK(int k) {
+        this.k = k;
+    }
+
+    synchronized void offer(Integer id, long count) {
+        RankedCount current = entries.get(id);
+        if(current != null) {
+            if(count <= current.count()) {
+                return;
+            }
+            heap.remove(current); // O(k), k is small
+        } else if(heap.size() >= k) {
+            if(count <= heap.peek().count()) {
+                return;
+            }
+            entries.remove(heap.poll().id());
+        }
+        RankedCount entry = new RankedCount(id, count);
+        heap.add(entry);
+        entries.put(id, entry);
+    }
+
+    synchronized void reset(List<RankedCount> counts) {
+        heap.clear();
+        entries.clear();
+        counts.forEach(count -> offer(count.id(), count.count()));
+    }
+
+    // largest first
+    synchronized List<RankedCount> top(int limit) {
+        return heap.stream()
+                .sorted(Comparator.comparingLong(RankedCount::count).reversed()
+                        .thenComparing(RankedCount::id))
+                .limit(limit)
+                .toList();
+    }
+}
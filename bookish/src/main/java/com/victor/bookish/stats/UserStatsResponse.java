@@ -0,0 +1,8 @@
+package com.victor.bookish.stats;
+
+// the loans of the connected user, as a borrower and as the owner of the books
+public record UserStatsResponse(
+        LendingCounts borrowed,
+        LendingCounts lent
+) {
+}
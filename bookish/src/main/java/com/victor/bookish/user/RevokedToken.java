@@ -0,0 +1,37 @@
+package com.victor.bookish.user;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// The denylist of the JWTs revoked before their expiration, see TokenRevocationService.
+// Either one token ("jti:<jti>", logout) or every token of a user issued before revokedAt
+// ("user:<email>", password change, lock...)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(indexes = {
+        // polled by the other instances
+        @Index(name = "idx_revoked_token_revoked_at", columnList = "revokedAt"),
+        // purge
+        @Index(name = "idx_revoked_token_expires_at", columnList = "expiresAt")
+})
+public class RevokedToken {
+
+    @Id
+    private String revocationKey;
+
+    private LocalDateTime revokedAt;
+
+    // once the revoked tokens expired, the row is useless
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,34 @@
+package com.victor.bookish.user;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    @Query("""
+            SELECT revoked
+            FROM RevokedToken revoked
+            WHERE revoked.expiresAt > :now
+            """)
+    List<RevokedToken> findActive(LocalDateTime now);
+
+    @Query("""
+            SELECT revoked
+            FROM RevokedToken revoked
+            WHERE revoked.revokedAt >= :since
+            """)
+    List<RevokedToken> findRevokedSince(LocalDateTime since);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            DELETE FROM RevokedToken revoked
+            WHERE revoked.expiresAt <= :now
+            """)
+    int deleteExpired(LocalDateTime now);
+}
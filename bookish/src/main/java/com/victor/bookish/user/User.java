@@ -3,6 +3,8 @@ package com.victor.bookish.user;
 import com.victor.bookish.book.Book;
 import com.victor.bookish.history.BookTransactionHistory;
 import com.victor.bookish.role.Role;
+import com.victor.bookish.security.UserAccessRevocation;
+import com.victor.bookish.security.UserCacheEviction;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
@@ -16,6 +18,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Getter
@@ -25,8 +28,8 @@ import java.util.stream.Collectors;
 @NoArgsConstructor
 @Entity
 @Table(name = "_user") // because "user" is a reserved name
-@EntityListeners(AuditingEntityListener.class)
-public class User implements UserDetails, Principal {
+@EntityListeners({AuditingEntityListener.class, UserCacheEviction.class, UserAccessRevocation.class})
+public class User implements UserDetails, Principal, UserPrincipal {
 
     @Id
     @GeneratedValue
@@ -67,6 +70,31 @@ public class User implements UserDetails, Principal {
     @Column(insertable = false) // not populated at creation of table
     private LocalDateTime lastModifiedDate;
 
+    // the access state as last loaded or saved, to tell the changes that revoke the tokens
+    // of the user (UserAccessRevocation)
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private AccessState savedAccess;
+
+    private record AccessState(String password, boolean accountLocked, boolean enabled) {}
+
+    // the entity listeners run first, they still see the previous state on @PostUpdate
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void rememberAccess() {
+        savedAccess = new AccessState(password, accountLocked, enabled);
+    }
+
+    // new password, account locked or disabled
+    public boolean isAccessRevoked() {
+        return savedAccess != null
+                && (!Objects.equals(password, savedAccess.password())
+                        || (accountLocked && !savedAccess.accountLocked())
+                        || (!enabled && savedAccess.enabled()));
+    }
+
     @Override
     public String getName() {
         return email;
@@ -87,7 +115,7 @@ public class User implements UserDetails, Principal {
 
     @Override
     public String getUsername() {
-        return "";
+        return email;
     }
 
     @Override
@@ -110,6 +138,7 @@ public class User implements UserDetails, Principal {
         return enabled;
     }
 
+    @Override
     public String fullName() {
         return firstname + " " + lastname;
     }
@@ -0,0 +1,13 @@
+package com.victor.bookish.user;
+
+// The connected user as the services see it: the User entity, or the lightweight principal built
+// from the claims of the token (see PrincipalResolver). When an entity is needed (owner of a book,
+// borrower of a loan...), take a reference with UserRepository.getReferenceById(getId())
+public interface UserPrincipal {
+
+    Integer getId();
+
+    String getEmail();
+
+    String fullName();
+}
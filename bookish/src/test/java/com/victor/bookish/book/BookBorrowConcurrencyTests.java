@@ -0,0 +1,170 @@
+package com.victor.bookish.book;
+
+import com.victor.bookish.exception.OperationNotPermittedException;
+import com.victor.bookish.history.BookTransactionHistory;
+import com.victor.bookish.history.BookTransactionHistoryRepository;
+import com.victor.bookish.user.User;
+import com.victor.bookish.user.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Concurrent borrows of the same book: exactly one of them may win, both through the conditional
+// UPDATE alone (the compare-and-set, without the book lock) and through the whole borrow workflow.
+// The workflow serializes the borrowers behind the book lock, hence the long lock timeout.
+// Not @Transactional, each borrow must commit on its own
+@SpringBootTest(properties = "application.books.lock.timeout=2m")
+class BookBorrowConcurrencyTests {
+
+    private static final int BORROWERS = 1_000;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BookTransactionHistoryRepository bookTransactionHistoryRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User owner;
+    private List<User> borrowers;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(newUser());
+        borrowers = userRepository.saveAll(IntStream.range(0, BORROWERS).mapToObj(i -> newUser()).toList());
+
+        SecurityContextHolder.getContext().setAuthentication(authenticationOf(owner)); // auditing
+        book = bookRepository.save(Book.builder()
+                .title("Title")
+                .authorName("Author")
+                .isbn("isbn")
+                .synopsis("Synopsis")
+                .shareable(true)
+                .owner(owner)
+                .build());
+        SecurityContextHolder.clearContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookTransactionHistoryRepository.deleteAllInBatch(histories());
+        bookRepository.deleteById(book.getId());
+        userRepository.deleteAllInBatch(borrowers);
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void theCompareAndSetLetsOnlyOneOfTheConcurrentBorrowersIn() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<Integer>> updates = new ArrayList<>();
+        for (User borrower : borrowers) {
+            updates.add(executor.submit(() -> {
+                start.await();
+                return transactionTemplate.execute(status ->
+                        bookRepository.markBorrowed(book.getId(), borrower.getId()));
+            }));
+        }
+        start.countDown();
+
+        int updated = 0;
+        for (Future<Integer> update : updates) {
+            updated += update.get();
+        }
+        executor.shutdown();
+
+        assertThat(updated).isEqualTo(1);
+        assertThat(bookRepository.findById(book.getId()))
+                .get()
+                .extracting(Book::getBorrowerId)
+                .isIn(borrowers.stream().map(User::getId).toList());
+    }
+
+    @Test
+    void onlyOneOfTheConcurrentBorrowersGetsTheBook() throws Exception {
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<Integer>> borrows = new ArrayList<>();
+        for (User borrower : borrowers) {
+            borrows.add(executor.submit(() -> {
+                Authentication connectedUser = authenticationOf(borrower);
+                SecurityContextHolder.getContext().setAuthentication(connectedUser); // auditing
+                start.await();
+                try {
+                    return bookService.borrowBook(book.getId(), connectedUser);
+                } catch (OperationNotPermittedException e) {
+                    refused.incrementAndGet();
+                    return null;
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            }));
+        }
+        start.countDown();
+
+        List<Integer> granted = new ArrayList<>();
+        for (Future<Integer> borrow : borrows) {
+            Integer historyId = borrow.get();
+            if (historyId != null) {
+                granted.add(historyId);
+            }
+        }
+        executor.shutdown();
+
+        assertThat(granted).hasSize(1);
+        assertThat(refused).hasValue(BORROWERS - 1);
+        assertThat(histories()).hasSize(1);
+        assertThat(bookRepository.findById(book.getId()))
+                .get()
+                .extracting(Book::getBorrowerId)
+                .isEqualTo(histories().get(0).getUser().getId());
+    }
+
+    private List<BookTransactionHistory> histories() {
+        return bookTransactionHistoryRepository.findAll().stream()
+                .filter(history -> history.getBook().getId().equals(book.getId()))
+                .toList();
+    }
+
+    private User newUser() {
+        return User.builder()
+                .firstname("First")
+                .lastname("Last")
+                .email(UUID.randomUUID() + "@bookish.test")
+                .password("password")
+                .enabled(true)
+                .roles(List.of())
+                .build();
+    }
+
+    private Authentication authenticationOf(User user) {
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+}
@@ -0,0 +1,131 @@
+package com.victor.bookish.book;
+
+import com.victor.bookish.user.User;
+import com.victor.bookish.user.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Also the benchmark of the bulk import: the throughput is logged by the test.
+// Not @Transactional, the import commits batch by batch on its own
+@Slf4j
+@SpringBootTest
+class BookBulkImportTests {
+
+    private static final int ROWS = 20_000;
+
+    @Autowired
+    private BookImportService bookImportService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private User owner;
+    private Authentication connectedUser;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(User.builder()
+                .firstname("First")
+                .lastname("Last")
+                .email(UUID.randomUUID() + "@bookish.test")
+                .password("password")
+                .enabled(true)
+                .roles(List.of())
+                .build());
+        connectedUser = new UsernamePasswordAuthenticationToken(owner, null, owner.getAuthorities());
+        SecurityContextHolder.getContext().setAuthentication(connectedUser); // auditing
+    }
+
+    @AfterEach
+    void tearDown() {
+        bookRepository.deleteAllInBatch(bookRepository.findAll(BookSpecification.withOwnerId(owner.getId())));
+        userRepository.delete(owner);
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void importsNdjsonAndReportsTheInvalidRows() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            ndjson.append("""
+                    {"title":"Title %d","authorName":"Author %d","isbn":"isbn-%d","synopsis":"Synopsis","sharable":true}
+                    """.formatted(i, i, i));
+        }
+        ndjson.append("{\"title\":\"\",\"authorName\":\"Author\",\"isbn\":\"isbn\",\"synopsis\":\"Synopsis\"}\n");
+        ndjson.append("{not json}\n");
+
+        BookImportResponse response = bookImportService.importBooks(
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)),
+                BookImportService.APPLICATION_NDJSON,
+                connectedUser
+        );
+
+        log.info("Bulk import: {} rows in {} ms ({} rows/s)",
+                response.imported(), response.durationMillis(), Math.round(response.rowsPerSecond()));
+        assertThat(response.imported()).isEqualTo(ROWS);
+        assertThat(response.rejected()).isEqualTo(2);
+        assertThat(response.errors()).extracting(BookImportError::row).containsExactly(ROWS + 1L, ROWS + 2L);
+    }
+
+    @Test
+    void importsCsvWithQuotedFields() throws Exception {
+        String csv = """
+                title,authorName,isbn,synopsis,sharable
+                "Dune, the novel",Frank Herbert,isbn-1,"A ""desert""
+                planet",true
+                Missing synopsis,Someone,isbn-2,,false
+                """;
+
+        BookImportResponse response = bookImportService.importBooks(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                BookImportService.TEXT_CSV,
+                connectedUser
+        );
+
+        assertThat(response.imported()).isEqualTo(1);
+        assertThat(response.errors()).extracting(BookImportError::row).containsExactly(2L);
+        assertThat(bookRepository.findAll(BookSpecification.withOwnerId(owner.getId())))
+                .extracting(Book::getTitle, Book::getSynopsis)
+                .containsExactly(tuple("Dune, the novel", "A \"desert\"\nplanet"));
+    }
+
+    @Test
+    void reportsAnUnterminatedQuoteAsOneRowAndGoesOn() throws Exception {
+        String csv = """
+                title,authorName,isbn,synopsis,sharable
+                Emma,Jane Austen,isbn-1,Matchmaking,true
+                "Broken,Someone,isbn-2,Never closed,true
+                Persuasion,Jane Austen,isbn-3,Second chances,true
+                """;
+
+        BookImportResponse response = bookImportService.importBooks(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                BookImportService.TEXT_CSV,
+                connectedUser
+        );
+
+        assertThat(response.imported()).isEqualTo(2);
+        assertThat(response.errors())
+                .extracting(BookImportError::row, BookImportError::message)
+                .containsExactly(tuple(2L, "Malformed CSV: Unterminated quoted field"));
+        assertThat(bookRepository.findAll(BookSpecification.withOwnerId(owner.getId())))
+                .extracting(Book::getTitle)
+                .containsExactlyInAnyOrder("Emma", "Persuasion");
+    }
+}
@@ -0,0 +1,185 @@
+package com.victor.bookish.book;
+
+import com.victor.bookish.common.TotalMode;
+import com.victor.bookish.user.User;
+import com.victor.bookish.user.UserRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Each filter of BookSpecification must be served by an index on a catalog of the size the
+// listings are meant for: about a million books are seeded once (committed, so ANALYZE sees them),
+// then each filtered listing goes through BookService and the SELECT Hibernate generated for it is
+// EXPLAINed. The criteria values are inlined as literals, which gives the plan Postgres makes for
+// the bound values of the real statements (a custom plan)
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.victor.bookish.book.BookFilterIndexTests$SelectRecorder",
+        "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BookFilterIndexTests {
+
+    private static final int BOOKS = 1_000_000;
+    private static final int PAGE_SIZE = 10;
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+    private User reader;
+
+    @BeforeAll
+    void seed() {
+        owner = userRepository.save(newUser());
+        reader = userRepository.save(newUser());
+
+        // one in 20 archived, one in 10 not shareable, one in 10000 borrowed or rated 5,
+        // 50000 authors, a book every 10 seconds over about 4 months. The ids come from the
+        // sequence of Book, Hibernate never hands them out again
+        jdbcTemplate.update("""
+                INSERT INTO book (id, title, author_name, isbn, synopsis, archived, shareable,
+                    rating_sum, rating_count, rating_average, borrower_id, version,
+                    owner_id, created_date, created_by)
+                SELECT nextval('book_seq'), 'Title ' || i, 'Author ' || (i % 50000),
+                    '978' || lpad(i::text, 10, '0'), 'Synopsis', i % 20 = 0, i % 10 <> 0,
+                    0, 0, CASE WHEN i % 10000 = 0 THEN 5 ELSE (i % 400) / 100.0 END,
+                    CASE WHEN i % 10000 = 1 THEN ? END, 0,
+                    ?, now() - i * INTERVAL '10 seconds', ?
+                FROM generate_series(1, ?) AS i
+                """, reader.getId(), owner.getId(), owner.getId(), BOOKS);
+        jdbcTemplate.execute("ANALYZE book");
+    }
+
+    @AfterAll
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM book WHERE owner_id = ?", owner.getId());
+        jdbcTemplate.execute("ANALYZE book");
+        userRepository.deleteAll(List.of(owner, reader));
+    }
+
+    @Test
+    void authorFilterUsesTheLowerAuthorNameIndex() {
+        assertThat(displayablePlan(filter().author(" AUTHOR 123 ")))
+                .contains("idx_book_author_name_lower");
+    }
+
+    @Test
+    void isbnPrefixFilterUsesThePatternIndex() {
+        assertThat(displayablePlan(filter().isbnPrefix("97800000012")))
+                .contains("idx_book_isbn_pattern");
+    }
+
+    @Test
+    void minRatingFilterUsesTheRatingAverageIndex() {
+        assertThat(displayablePlan(filter().minRating(4.5)))
+                .contains("idx_book_rating_average");
+    }
+
+    @Test
+    void borrowedFilterUsesTheBorrowerIndex() {
+        assertThat(displayablePlan(filter().available(false)))
+                .contains("idx_book_borrower_id");
+    }
+
+    // most books are available: reading the listing order and skipping the borrowed ones is the plan
+    @Test
+    void availableFilterReadsTheListingInIndexOrder() {
+        assertThat(displayablePlan(filter().available(true)))
+                .contains("idx_book_displayable_created_date");
+    }
+
+    @Test
+    void dateRangeFilterSeeksTheCreatedDateIndex() {
+        LocalDate day = LocalDate.now().minusDays(30);
+        assertThat(displayablePlan(filter().createdFrom(day).createdTo(day)))
+                .contains("idx_book_displayable_created_date")
+                .contains("Index Cond");
+    }
+
+    @Test
+    void shareableFilterReadsTheOwnerListingInIndexOrder() {
+        assertThat(ownerPlan(filter().shareable(false)))
+                .contains("idx_book_owner_created_date_id");
+    }
+
+    @Test
+    void archivedFilterReadsTheOwnerListingInIndexOrder() {
+        assertThat(ownerPlan(filter().archived(true)))
+                .contains("idx_book_owner_created_date_id");
+    }
+
+    private String displayablePlan(BookFilter.BookFilterBuilder filter) {
+        SelectRecorder.SELECTS.clear();
+        bookService.findAllBooks(0, PAGE_SIZE, TotalMode.EXACT, filter.build(), authenticationOf(reader));
+        return plan(SelectRecorder.SELECTS.get(0));
+    }
+
+    private String ownerPlan(BookFilter.BookFilterBuilder filter) {
+        SelectRecorder.SELECTS.clear();
+        bookService.findAllBooksOwner(0, PAGE_SIZE, TotalMode.EXACT, filter.build(), authenticationOf(owner));
+        return plan(SelectRecorder.SELECTS.get(0));
+    }
+
+    // the criteria values are inlined, only the page size is left as a parameter
+    private String plan(String select) {
+        List<String> lines = jdbcTemplate.queryForList(
+                "EXPLAIN " + select.replace("?", String.valueOf(PAGE_SIZE)), String.class);
+        String plan = String.join("\n", lines);
+        assertThat(plan).doesNotContain("Seq Scan on book");
+        return plan;
+    }
+
+    private static BookFilter.BookFilterBuilder filter() {
+        return BookFilter.builder();
+    }
+
+    private User newUser() {
+        return User.builder()
+                .firstname("First")
+                .lastname("Last")
+                .email(UUID.randomUUID() + "@bookish.test")
+                .password("password")
+                .enabled(true)
+                .roles(List.of())
+                .build();
+    }
+
+    private Authentication authenticationOf(User user) {
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+
+    // Keeps the SELECTs Hibernate sends, in order. Instantiated by Hibernate from its class name
+    public static class SelectRecorder implements StatementInspector {
+
+        static final List<String> SELECTS = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            if(sql.stripLeading().regionMatches(true, 0, "select", 0, 6)) {
+                synchronized (SELECTS) {
+                    SELECTS.add(sql);
+                }
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.victor.bookish.book;
+
+import com.victor.bookish.common.PageResponse;
+import com.victor.bookish.common.TotalMode;
+import com.victor.bookish.user.User;
+import com.victor.bookish.user.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The listing pages must cost a fixed number of statements, whatever the number of
+// owners and feedbacks behind the books on the page
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class BookListingStatementCountTests {
+
+    private static final int BOOKS = 6;
+    private static final int PAGE_SIZE = 3;
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+    private Authentication reader;
+    private Authentication owner;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+
+        reader = authenticationOf(userRepository.save(newUser()));
+
+        // one owner per book, so an N+1 on the owner would show up as extra statements
+        for (int i = 0; i < BOOKS; i++) {
+            User bookOwner = userRepository.save(newUser());
+            owner = authenticationOf(bookOwner);
+            SecurityContextHolder.getContext().setAuthentication(owner); // auditing
+            bookRepository.save(Book.builder()
+                    .title("Title " + i)
+                    .authorName("Author " + i)
+                    .isbn("isbn-" + i)
+                    .synopsis("Synopsis " + i)
+                    .shareable(true)
+                    .ratingSum(9.0)
+                    .ratingCount(2)
+                    .owner(bookOwner)
+                    .build());
+        }
+        SecurityContextHolder.clearContext();
+
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void displayableBooksPageRunsTheSelectAndTheCountOnly() {
+        PageResponse<BookResponse> page =
+                bookService.findAllBooks(0, PAGE_SIZE, TotalMode.EXACT, BookFilter.NONE, reader);
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        assertThat(page.getContent()).allSatisfy(book -> assertThat(book.getOwner()).isNotBlank());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void displayableBooksSliceRunsASingleStatement() {
+        PageResponse<BookResponse> page =
+                bookService.findAllBooks(0, PAGE_SIZE, TotalMode.NONE, BookFilter.NONE, reader);
+
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        assertThat(page.getTotalElements()).isNull();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void ownerBooksSliceRunsASingleStatement() {
+        PageResponse<BookResponse> page =
+                bookService.findAllBooksOwner(0, PAGE_SIZE, TotalMode.NONE, BookFilter.NONE, owner);
+
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.getContent().get(0).getRate()).isEqualTo(4.5);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private User newUser() {
+        return User.builder()
+                .firstname("First")
+                .lastname("Last")
+                .email(UUID.randomUUID() + "@bookish.test")
+                .password("password")
+                .enabled(true)
+                .roles(List.of())
+                .build();
+    }
+
+    private Authentication authenticationOf(User user) {
+        return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+}
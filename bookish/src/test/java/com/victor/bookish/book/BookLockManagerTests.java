@@ -0,0 +1,111 @@
+package com.victor.bookish.book;
+
+import com.victor.bookish.exception.BookLockTimeoutException;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The same checks for each application.books.lock.mode: one action at a time per book, and a caller
+// that cannot get the lock within the timeout gives up with BookLockTimeoutException
+class BookLockManagerTests {
+
+    private static final int BOOK_ID = 424_242;
+    private static final int THREADS = 8;
+    private static final int ACTIONS = 200;
+
+    @Nested
+    @SpringBootTest(properties = {
+            "application.books.lock.mode=local",
+            "application.books.lock.timeout=200ms"
+    })
+    class Local extends Checks {
+    }
+
+    @Nested
+    @SpringBootTest(properties = {
+            "application.books.lock.mode=advisory",
+            "application.books.lock.timeout=200ms"
+    })
+    class Advisory extends Checks {
+    }
+
+    abstract static class Checks {
+
+        @Autowired
+        private BookLockManager bookLockManager;
+
+        @Test
+        void runsOneActionAtATimePerBook() throws Exception {
+            AtomicInteger inside = new AtomicInteger();
+            AtomicInteger maxInside = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+            List<Future<Integer>> actions = new ArrayList<>();
+            for (int i = 0; i < ACTIONS; i++) {
+                actions.add(executor.submit(() -> {
+                    start.await();
+                    return bookLockManager.withLock(BOOK_ID, () -> {
+                        maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                        // long enough for another thread to get in, if the lock let it
+                        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                        return inside.decrementAndGet();
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> action : actions) {
+                action.get(1, TimeUnit.MINUTES);
+            }
+            executor.shutdown();
+
+            assertThat(maxInside).hasValue(1);
+        }
+
+        @Test
+        void givesUpAfterTheTimeout() throws Exception {
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+
+            Future<Boolean> holder = executor.submit(() -> bookLockManager.withLock(BOOK_ID, () -> {
+                locked.countDown();
+                try {
+                    return release.await(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }));
+            try {
+                assertThat(locked.await(1, TimeUnit.MINUTES)).isTrue();
+
+                long start = System.nanoTime();
+                assertThatThrownBy(() -> bookLockManager.withLock(BOOK_ID, () -> true))
+                        .isInstanceOf(BookLockTimeoutException.class);
+                assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(200);
+            } finally {
+                release.countDown();
+            }
+            assertThat(holder.get(1, TimeUnit.MINUTES)).isTrue();
+            executor.shutdown();
+
+            // free again once the holder is done
+            assertThat(bookLockManager.withLock(BOOK_ID, () -> true)).isTrue();
+        }
+    }
+}
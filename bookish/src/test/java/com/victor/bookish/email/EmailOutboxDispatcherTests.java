@@ -0,0 +1,245 @@
+package com.victor.bookish.email;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Against an in-process SMTP stand-in, also the benchmark of the dispatcher: the throughput is
+// logged by the test. The scheduled dispatch is pushed out of the way, the test drains by itself.
+// The database is shared and drain() sends every due email in it, so the assertions only look at
+// the emails queued by the test, told apart by their recipient domain
+@Slf4j
+@SpringBootTest(properties = {
+        "application.mailing.outbox.poll-ms=3600000",
+        "application.mailing.outbox.batch-size=50",
+        "application.mailing.outbox.max-attempts=2",
+        "spring.mail.username=",
+        "spring.mail.password=",
+        "spring.mail.properties.mail.smtp.auth=false",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "spring.mail.properties.mail.smtp.starttls.required=false"
+})
+class EmailOutboxDispatcherTests {
+
+    private static final int EMAILS = 1_000;
+    private static final String DOMAIN = "@" + UUID.randomUUID() + ".bookish.test";
+
+    private static final SmtpStandIn smtp = new SmtpStandIn();
+
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+    @Autowired
+    private OutboxEmailRepository outboxEmailRepository;
+
+    private final List<OutboxEmail> queued = new ArrayList<>();
+
+    @DynamicPropertySource
+    static void smtpProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.host", () -> "localhost");
+        registry.add("spring.mail.port", smtp::port);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxEmailRepository.deleteAllInBatch(queued);
+    }
+
+    @AfterAll
+    static void stopSmtp() {
+        smtp.close();
+    }
+
+    @Test
+    void sendsTheOutboxInBatchesOverOneConnectionEach() {
+        for (int i = 0; i < EMAILS; i++) {
+            queue("reader" + i + DOMAIN);
+        }
+
+        long start = System.nanoTime();
+        emailOutboxDispatcher.drain();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<OutboxEmail> sent = outboxEmailRepository.findAllById(ids());
+        log.info("Email outbox: {} mails in {} ms ({} mails/s)",
+                sent.size(), Math.round(seconds * 1000), Math.round(sent.size() / seconds));
+        assertThat(sent).hasSize(EMAILS).allMatch(email -> email.getStatus() == OutboxEmailStatus.SENT);
+
+        List<Delivery> deliveries = smtp.deliveries.stream()
+                .filter(delivery -> delivery.recipient().endsWith(DOMAIN))
+                .toList();
+        assertThat(deliveries).hasSize(EMAILS);
+
+        // The older due emails left in the database can be claimed in the same batches as the ones
+        // of the test, so the connections are not counted: each one carried a batch at most, and the
+        // ones that carried only emails of the test are full batches, but for the last of the drain
+        Set<Integer> ourConnections = deliveries.stream().map(Delivery::connection).collect(Collectors.toSet());
+        Map<Integer, List<Delivery>> perConnection = smtp.deliveries.stream()
+                .filter(delivery -> ourConnections.contains(delivery.connection()))
+                .collect(Collectors.groupingBy(Delivery::connection));
+        assertThat(perConnection.values()).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(50));
+        assertThat(perConnection.values().stream()
+                .filter(batch -> batch.stream().allMatch(delivery -> delivery.recipient().endsWith(DOMAIN)))
+                .filter(batch -> batch.size() < 50)
+                .count())
+                .isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    void retriesWithBackoffThenGivesUp() {
+        OutboxEmail bounced = queue("bounce" + DOMAIN);
+        OutboxEmail delivered = queue("reader" + DOMAIN);
+
+        emailOutboxDispatcher.drain();
+
+        OutboxEmail retried = outboxEmailRepository.findById(bounced.getId()).orElseThrow();
+        assertThat(retried.getStatus()).isEqualTo(OutboxEmailStatus.PENDING);
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(retried.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        assertThat(outboxEmailRepository.findById(delivered.getId()).orElseThrow().getStatus())
+                .isEqualTo(OutboxEmailStatus.SENT);
+
+        retried.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+        outboxEmailRepository.save(retried);
+        emailOutboxDispatcher.drain();
+
+        OutboxEmail dead = outboxEmailRepository.findById(bounced.getId()).orElseThrow();
+        assertThat(dead.getStatus()).isEqualTo(OutboxEmailStatus.DEAD);
+        assertThat(dead.getAttempts()).isEqualTo(2);
+        assertThat(dead.getLastError()).isNotBlank();
+    }
+
+    private OutboxEmail queue(String recipient) {
+        OutboxEmail email = outboxEmailRepository.save(OutboxEmail.builder()
+                .recipient(recipient)
+                .subject("Subject")
+                .body("<p>Body</p>")
+                .status(OutboxEmailStatus.PENDING)
+                .nextAttemptAt(LocalDateTime.now().minusSeconds(1))
+                .createdAt(LocalDateTime.now())
+                .build());
+        queued.add(email);
+        return email;
+    }
+
+    private List<Integer> ids() {
+        return queued.stream().map(OutboxEmail::getId).toList();
+    }
+
+    private record Delivery(int connection, String recipient) {
+    }
+
+    // Just enough SMTP for JavaMail, no TLS nor AUTH, one recipient per message. Keeps the messages
+    // accepted with the connection they came on, refuses the recipients starting with "bounce"
+    private static class SmtpStandIn implements AutoCloseable {
+
+        final AtomicInteger connections = new AtomicInteger();
+        final Queue<Delivery> deliveries = new ConcurrentLinkedQueue<>();
+
+        private final ServerSocket serverSocket;
+
+        SmtpStandIn() {
+            try {
+                serverSocket = new ServerSocket(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Thread acceptor = new Thread(this::accept, "smtp-stand-in");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    int connection = connections.incrementAndGet();
+                    Thread session = new Thread(() -> serve(socket, connection), "smtp-stand-in-session");
+                    session.setDaemon(true);
+                    session.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket, int connection) {
+            try (socket;
+                 var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 var out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+                reply(out, "220 localhost ready");
+                String recipient = null;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase();
+                    if(command.startsWith("EHLO") || command.startsWith("HELO")) {
+                        reply(out, "250 localhost");
+                    } else if(command.startsWith("RCPT") && command.contains("<BOUNCE")) {
+                        reply(out, "550 no such user");
+                    } else if(command.startsWith("RCPT")) {
+                        recipient = line.substring(line.indexOf('<') + 1, line.lastIndexOf('>'));
+                        reply(out, "250 ok");
+                    } else if(command.startsWith("DATA")) {
+                        reply(out, "354 end with <CRLF>.<CRLF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // the message itself is not kept
+                        }
+                        deliveries.add(new Delivery(connection, recipient));
+                        reply(out, "250 queued");
+                    } else if(command.startsWith("QUIT")) {
+                        reply(out, "221 bye");
+                        return;
+                    } else {
+                        // MAIL, RSET, NOOP
+                        reply(out, "250 ok");
+                    }
+                }
+            } catch (IOException e) {
+                // the client went away
+            }
+        }
+
+        private static void reply(PrintWriter out, String reply) {
+            out.print(reply + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+}
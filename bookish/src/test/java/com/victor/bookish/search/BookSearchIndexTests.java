@@ -0,0 +1,124 @@
+package com.victor.bookish.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookSearchIndexTests {
+
+    private static final Integer OWNER = 1;
+    private static final Integer READER = 2;
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex();
+    }
+
+    @Test
+    void ranksATitleMatchAboveASynopsisMatch() {
+        index.index(book(1, "A desert planet", "Someone", "Mentions dune once"));
+        index.index(book(2, "Dune", "Frank Herbert", "Spice"));
+
+        assertThat(ids(index.search("dune", READER, 0, 10))).containsExactly(2, 1);
+    }
+
+    @Test
+    void matchesEveryTokenOfTheQueryFirst() {
+        index.index(book(1, "The Hobbit", "Tolkien", "A journey"));
+        index.index(book(2, "The Silmarillion", "Tolkien", "Legends"));
+
+        assertThat(ids(index.search("tolkien hobbit", READER, 0, 10))).containsExactly(1, 2);
+    }
+
+    @Test
+    void matchesTermsByPrefix() {
+        index.index(book(1, "The Hobbit", "Tolkien", "A journey"));
+
+        assertThat(ids(index.search("hobb", READER, 0, 10))).containsExactly(1);
+    }
+
+    @Test
+    void ranksAnExactMatchAboveAPrefixMatch() {
+        index.index(book(1, "Hobbits", "Someone", "Synopsis"));
+        index.index(book(2, "Hobbit", "Someone", "Synopsis"));
+
+        assertThat(ids(index.search("hobbit", READER, 0, 10))).containsExactly(2, 1);
+    }
+
+    @Test
+    void toleratesATypo() {
+        index.index(book(1, "The Hobbit", "Tolkien", "A journey"));
+
+        assertThat(ids(index.search("hobit", READER, 0, 10))).containsExactly(1);
+        // too short to be corrected
+        assertThat(ids(index.search("hbt", READER, 0, 10))).isEmpty();
+    }
+
+    @Test
+    void ignoresCaseAndAccents() {
+        index.index(book(1, "\u00c9mile", "Rousseau", "\u00c9ducation"));
+
+        assertThat(ids(index.search("EMILE education", READER, 0, 10))).containsExactly(1);
+    }
+
+    @Test
+    void findsAnIsbnWithOrWithoutDashes() {
+        index.index(new IndexedBook(1, OWNER, "Owner", "Title", "Author", "978-3-16-148410-0",
+                "Synopsis", null, 0, 0, false, true));
+
+        assertThat(ids(index.search("9783161484100", READER, 0, 10))).containsExactly(1);
+        assertThat(ids(index.search("978-3-16", READER, 0, 10))).containsExactly(1);
+    }
+
+    @Test
+    void onlyReturnsTheBooksDisplayableToTheUser() {
+        index.index(book(1, "Dune", "Frank Herbert", "Spice"));
+        index.index(new IndexedBook(2, OWNER, "Owner", "Dune", "Frank Herbert", "isbn-2",
+                "Spice", null, 0, 0, true, true));
+        index.index(new IndexedBook(3, OWNER, "Owner", "Dune", "Frank Herbert", "isbn-3",
+                "Spice", null, 0, 0, false, false));
+
+        assertThat(ids(index.search("dune", READER, 0, 10))).containsExactly(1);
+        // their own books are not listed to the owners
+        assertThat(ids(index.search("dune", OWNER, 0, 10))).isEmpty();
+    }
+
+    @Test
+    void pagesTheHitsAndCountsThemAll() {
+        for (int i = 1; i <= 5; i++) {
+            index.index(book(i, "Dune " + i, "Frank Herbert", "Spice"));
+        }
+
+        BookSearchIndex.SearchResult page = index.search("dune", READER, 2, 2);
+
+        assertThat(page.books()).hasSize(2);
+        assertThat(page.totalHits()).isEqualTo(5);
+    }
+
+    @Test
+    void forgetsTheTermsOfARemovedOrReindexedBook() {
+        index.index(book(1, "Dune", "Frank Herbert", "Spice"));
+        index.index(book(2, "Emma", "Jane Austen", "Matchmaking"));
+
+        index.index(book(1, "Children of Dune", "Frank Herbert", "Spice"));
+        index.remove(2);
+
+        assertThat(ids(index.search("children", READER, 0, 10))).containsExactly(1);
+        assertThat(ids(index.search("emma", READER, 0, 10))).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    private static IndexedBook book(int id, String title, String authorName, String synopsis) {
+        return new IndexedBook(id, OWNER, "Owner", title, authorName, "isbn-" + id,
+                synopsis, null, 0, 0, false, true);
+    }
+
+    private static List<Integer> ids(BookSearchIndex.SearchResult result) {
+        return result.books().stream().map(IndexedBook::id).toList();
+    }
+}
@@ -0,0 +1,107 @@
+package com.victor.bookish.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookSuggestionTrieTests {
+
+    private BookSuggestionTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new BookSuggestionTrie();
+        ReflectionTestUtils.setField(trie, "suggestionsPerNode", 10);
+    }
+
+    @Test
+    void suggestsTheMostPopularFirst() {
+        trie.index(book(1, "The Hobbit", "Tolkien"));
+        trie.index(book(2, "The Silmarillion", "Tolkien"));
+        trie.index(book(3, "War and Peace", "Tolstoy"));
+
+        assertThat(trie.suggest("tol", 10)).containsExactly("Tolkien", "Tolstoy");
+    }
+
+    @Test
+    void suggestsFromTheStartOfAnyWord() {
+        trie.index(book(1, "The Hobbit", "Tolkien"));
+
+        assertThat(trie.suggest("hob", 10)).containsExactly("The Hobbit");
+        assertThat(trie.suggest("the h", 10)).containsExactly("The Hobbit");
+    }
+
+    @Test
+    void ignoresCaseAndAccents() {
+        trie.index(book(1, "\u00c9mile", "Rousseau"));
+
+        assertThat(trie.suggest("EM", 10)).containsExactly("\u00c9mile");
+    }
+
+    @Test
+    void keepsToTheLimit() {
+        trie.index(book(1, "Dune", "Frank Herbert"));
+        trie.index(book(2, "Dune Messiah", "Frank Herbert"));
+        trie.index(book(3, "Children of Dune", "Frank Herbert"));
+
+        assertThat(trie.suggest("dune", 2)).hasSize(2);
+        assertThat(trie.suggest("", 10)).isEmpty();
+        assertThat(trie.suggest("xyz", 10)).isEmpty();
+    }
+
+    @Test
+    void rejectsALimitBelowOne() {
+        trie.index(book(1, "Dune", "Frank Herbert"));
+
+        assertThatThrownBy(() -> trie.suggest("dune", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void keepsTheSuggestionsEndingOnTheSameKey() {
+        trie.index(book(1, "Ho", "Someone"));
+        trie.index(book(2, "Abc Ho", "Someone Else"));
+
+        assertThat(trie.suggest("h", 10)).containsExactlyInAnyOrder("Ho", "Abc Ho");
+
+        trie.remove(1);
+        assertThat(trie.suggest("h", 10)).containsExactly("Abc Ho");
+    }
+
+    @Test
+    void splitsAndMergesTheSharedPrefixes() {
+        trie.index(book(1, "Tolkien", "A"));
+        trie.index(book(2, "Tolstoy", "B"));
+        trie.index(book(3, "Tom", "C"));
+
+        assertThat(trie.suggest("tolk", 10)).containsExactly("Tolkien");
+        assertThat(trie.suggest("to", 10)).containsExactlyInAnyOrder("Tolkien", "Tolstoy", "Tom");
+
+        trie.remove(2);
+        trie.remove(3);
+        assertThat(trie.suggest("to", 10)).containsExactly("Tolkien");
+        assertThat(trie.suggest("tolkien", 10)).containsExactly("Tolkien");
+    }
+
+    @Test
+    void takesBackTheSuggestionsOfARemovedOrHiddenBook() {
+        trie.index(book(1, "The Hobbit", "Tolkien"));
+        trie.index(book(2, "The Silmarillion", "Tolkien"));
+        trie.index(book(3, "War and Peace", "Tolstoy"));
+
+        trie.remove(1);
+        trie.index(new IndexedBook(2, 1, "Owner", "The Silmarillion", "Tolkien", "isbn-2",
+                "Synopsis", null, 0, 0, true, true));
+
+        assertThat(trie.suggest("tol", 10)).containsExactly("Tolstoy");
+        assertThat(trie.suggest("hob", 10)).isEmpty();
+    }
+
+    private static IndexedBook book(int id, String title, String authorName) {
+        return new IndexedBook(id, 1, "Owner", title, authorName, "isbn-" + id,
+                "Synopsis", null, 0, 0, false, true);
+    }
+}
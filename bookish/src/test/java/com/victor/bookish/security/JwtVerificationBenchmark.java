@@ -0,0 +1,105 @@
+package com.victor.bookish.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// Cost of the token checks JwtFilter does on every authenticated request, the user lookup aside.
+// Not a test (no *Tests suffix), run it from the IDE or with:
+// mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.victor.bookish.security.JwtVerificationBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET_KEY = "ZGV2ZWxvcG1lbnQtb25seS1zZWNyZXQta2V5LWZvci10aGUtand0LWJlbmNobWFyaw==";
+
+    private JwtService jwtService;
+    private JwtVerifier jwtVerifier;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET_KEY);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", TimeUnit.HOURS.toMillis(1));
+        jwtService.init();
+
+        jwtVerifier = new JwtVerifier(jwtService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtVerifier, "maxSize", 10_000L);
+        jwtVerifier.init();
+
+        userDetails = User.withUsername("reader@bookish.dev")
+                .password("password")
+                .authorities("USER")
+                .build();
+        token = jwtService.generateToken(userDetails);
+    }
+
+    // what JwtFilter used to do: extractUsername then isTokenValid, three parses in all,
+    // each one decoding the secret and building a new key and parser
+    @Benchmark
+    public boolean before() {
+        String username = parseLikeBefore(token).getSubject();
+        return username != null
+                && parseLikeBefore(token).getSubject().equals(userDetails.getUsername())
+                && !parseLikeBefore(token).getExpiration().before(new Date());
+    }
+
+    // first request of a token: one parse with the shared parser
+    @Benchmark
+    public boolean afterFirstRequest() {
+        Claims claims = jwtService.extractAllClaims(token);
+        return jwtService.isTokenValid(claims, userDetails);
+    }
+
+    // the next requests with the same token: served by the cache of JwtVerifier
+    @Benchmark
+    public boolean afterNextRequests() {
+        Claims claims = jwtVerifier.verify(token);
+        return jwtService.isTokenValid(claims, userDetails);
+    }
+
+    private static Claims parseLikeBefore(String token) {
+        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
+        Key key = Keys.hmacShaKeyFor(keyBytes);
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .build()
+        ).run();
+    }
+}